@@ -1,52 +1,187 @@
 package com.kdue.browserfx;
 
 import okhttp3.*;
+import okio.BufferedSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AIChatService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AIChatService.class);
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     /** Appended to system prompt so the assistant responds in Vietnamese by default. */
     private static final String DEFAULT_LANGUAGE_INSTRUCTION = " Always respond in Vietnamese (Tiếng Việt).";
 
+    /**
+     * System prompt shared by every request, so the system message and the page context after it
+     * form the same leading bytes whatever the prompt type. Composed once.
+     */
+    private static final String SYSTEM_PROMPT = "You are a helpful assistant built into a web browser. The conversation starts with the content of the web page the user is viewing, followed by the user's requests about it. Base your answers on that content and follow the guidelines given with each request." + DEFAULT_LANGUAGE_INSTRUCTION;
+
+    /**
+     * Kinds of request. Each carries task guidelines that are sent with the request itself, after
+     * the page context, so switching type does not change the cacheable prompt prefix.
+     */
     public enum PromptType {
-        QUESTION("You are a helpful assistant that answers questions about web page content. Provide concise and accurate answers based only on the provided page content. The content may include \"Products on page (title | URL | price):\" and an \"Additional links found on page\" section with lines of the form \"linkText: url\". When the user asks for the link or URL of a specific product (or the cheapest product, etc.), use those sections and return the full URL for that product—never return only \"/\" or a relative path. Do not return the current page URL or a collection/category URL unless the user explicitly asked for that. When the user asks for any other link or URL, use the section to find and return the exact full URL."),
-        SUMMARIZE("You are a helpful assistant that summarizes web page content. Provide a clear, concise summary capturing the main points."),
-        EXTRACT_LINKS("You are a helpful assistant that extracts URLs from web page content. List all valid URLs found, one per line."),
-        EXTRACT_CONTACT("You are a helpful assistant that extracts contact information from web page content. Find and list all emails, phone numbers, and addresses."),
-        TRANSLATE("You are a helpful assistant that translates content to the specified language. Preserve the original meaning."),
-        READING_MODE("You are a helpful assistant that extracts clean, readable text from web page content. Remove all navigation, ads, and clutter. Return only the main article or content in a clean format."),
-        HELP_CHOOSE_PRODUCT("You are a helpful shopping assistant. Based on the web page content (which may include a \"Products on page (title | URL | price):\" section and an \"Additional links found on page\" section with \"linkText: url\" lines), help the user choose the right product. Use product titles, URLs, and prices from these sections. Compare options clearly, consider their stated budget or priorities if given, and recommend the best fit with brief pros and cons. When mentioning a product, include its full URL from the page content so the user can click through (never return only a path like \"/\" or \"/product/1\"). Be concise and practical."),
-        PURCHASE_ADVICE("You are a helpful, honest shopping advisor. Based on the page content (including \"Products on page (title | URL | price):\" and \"Additional links found on page\" with \"linkText: url\"), give smart purchase advice: highlight real value, genuine limited-time or stock cues if present, and how well items match the user's needs. Use the product list and full URLs from the content when referring to specific items (never return only \"/\" or a relative path). Gently nudge toward a confident decision when it makes sense, but never be pushy or invent fake urgency. If something is not a good fit, say so. Keep the tone helpful and trustworthy.");
-
-        private final String systemPrompt;
-
-        PromptType(String systemPrompt) {
-            this.systemPrompt = systemPrompt;
+        QUESTION("Provide concise and accurate answers based only on the provided page content. The content may include \"Products on page (title | URL | price):\" and an \"Additional links found on page\" section with lines of the form \"linkText: url\". When the user asks for the link or URL of a specific product (or the cheapest product, etc.), use those sections and return the full URL for that product—never return only \"/\" or a relative path. Do not return the current page URL or a collection/category URL unless the user explicitly asked for that. When the user asks for any other link or URL, use the section to find and return the exact full URL."),
+        SUMMARIZE("Provide a clear, concise summary capturing the main points."),
+        EXTRACT_LINKS("List all valid URLs found, one per line."),
+        EXTRACT_CONTACT("Find and list all emails, phone numbers, and addresses."),
+        TRANSLATE("Translate the content to the specified language. Preserve the original meaning."),
+        READING_MODE("Remove all navigation, ads, and clutter. Return only the main article or content in a clean format."),
+        HELP_CHOOSE_PRODUCT("Act as a helpful shopping assistant. Based on the web page content (which may include a \"Products on page (title | URL | price):\" section and an \"Additional links found on page\" section with \"linkText: url\" lines), help the user choose the right product. Use product titles, URLs, and prices from these sections. Compare options clearly, consider their stated budget or priorities if given, and recommend the best fit with brief pros and cons. When mentioning a product, include its full URL from the page content so the user can click through (never return only a path like \"/\" or \"/product/1\"). Be concise and practical."),
+        PURCHASE_ADVICE("Act as a helpful, honest shopping advisor. Based on the page content (including \"Products on page (title | URL | price):\" and \"Additional links found on page\" with \"linkText: url\"), give smart purchase advice: highlight real value, genuine limited-time or stock cues if present, and how well items match the user's needs. Use the product list and full URLs from the content when referring to specific items (never return only \"/\" or a relative path). Gently nudge toward a confident decision when it makes sense, but never be pushy or invent fake urgency. If something is not a good fit, say so. Keep the tone helpful and trustworthy.");
+
+        private final String taskPrompt;
+
+        PromptType(String taskPrompt) {
+            this.taskPrompt = taskPrompt;
+        }
+
+        public String getTaskPrompt() {
+            return taskPrompt;
+        }
+    }
+
+    /**
+     * Receives an assistant answer incrementally. Methods are invoked on the OkHttp dispatcher
+     * thread, or synchronously on the calling thread when the answer is served from the response
+     * cache; hop to the FX thread before touching any UI state.
+     */
+    public interface StreamCallback {
+        /** Called for every non-empty content delta, in arrival order. */
+        void onDelta(String delta);
+
+        /** Called once with the full answer after the stream has ended. */
+        void onComplete(String fullText);
+
+        void onFailure(IOException e);
+
+        /**
+         * Called before {@link #onComplete} with the token usage reported by the provider, if it
+         * reported any. Not called for answers served from the response cache.
+         */
+        default void onUsage(ChatCompletionParser.Usage usage) {
         }
+    }
 
-        public String getSystemPrompt() {
-            return systemPrompt;
+    /** Prompt token totals over all answers that reported usage, and how many came from the provider's prompt cache. */
+    public record PromptUsageStats(long requests, long promptTokens, long cachedPromptTokens) {
+        public double cachedRatio() {
+            return promptTokens == 0 ? 0 : (double) cachedPromptTokens / promptTokens;
         }
     }
 
+    /** Cancels interest in a request started with the streaming {@code sendMessage}. */
+    public interface RequestHandle {
+        /** Handle for requests that completed synchronously (cache hits, configuration errors). */
+        RequestHandle NONE = () -> { };
+
+        /**
+         * Stops delivery to this caller. The underlying call is cancelled as soon as no other
+         * caller shares it, releasing its connection and dispatcher thread immediately.
+         */
+        void cancel();
+    }
+
     private final ConfigManager configManager;
     private final OkHttpClient client;
+    /** Null when caching is disabled in the configuration. */
+    private final AIResponseCache responseCache;
+    /** Requests currently on the wire, keyed like the response cache, so identical prompts share one call. */
+    private final Map<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong usageRequests = new AtomicLong();
+    private final AtomicLong usagePromptTokens = new AtomicLong();
+    private final AtomicLong usageCachedPromptTokens = new AtomicLong();
     private String currentModel;
 
     public AIChatService(ConfigManager configManager) {
+        this(configManager, BrowserApplication.backgroundTasks());
+    }
+
+    public AIChatService(ConfigManager configManager, BackgroundTasks backgroundTasks) {
         this.configManager = configManager;
         this.currentModel = configManager.getLitellmModel();
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        this.responseCache = createResponseCache(configManager, backgroundTasks);
+        this.client = HttpClients.shared(configManager);
+    }
+
+    /**
+     * Opens a connection to the AI endpoint in the background (DNS, TCP and TLS) so the first
+     * real question reuses a pooled connection. The response itself is ignored.
+     */
+    public void warmUp() {
+        String endpoint = configManager.getLitellmEndpoint();
+        if (endpoint == null || endpoint.isBlank()) {
+            return;
+        }
+        Request request;
+        try {
+            request = new Request.Builder().url(buildUrl(endpoint)).head().build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Skipping warm-up for invalid endpoint {}", endpoint);
+            return;
+        }
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                LOGGER.debug("AI endpoint warm-up failed", e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                LOGGER.info("AI endpoint warm-up done via {} ({})", response.protocol(), getConnectionStats());
+            }
+        });
+    }
+
+    /** Connection reuse counters of the shared HTTP client. */
+    public HttpClients.ConnectionMetrics.Stats getConnectionStats() {
+        return HttpClients.metrics().stats();
+    }
+
+    private static AIResponseCache createResponseCache(ConfigManager configManager, BackgroundTasks backgroundTasks) {
+        if (!configManager.isResponseCacheEnabled()) {
+            return null;
+        }
+        Path diskDir = configManager.isResponseCacheDiskEnabled()
+                ? Paths.get(System.getProperty("user.home"), ".browserfx", "ai-cache")
+                : null;
+        return new AIResponseCache(
+                configManager.getResponseCacheMaxEntries(),
+                configManager.getResponseCacheMaxChars(),
+                Duration.ofMinutes(configManager.getResponseCacheTtlMinutes()),
+                diskDir,
+                backgroundTasks.executor(BackgroundTasks.WorkType.DISK_IO));
+    }
+
+    /** Hit/miss counters of the response cache, or null when caching is disabled. */
+    public AIResponseCache.Stats getCacheStats() {
+        return responseCache != null ? responseCache.stats() : null;
+    }
+
+    /** Provider prompt cache effectiveness since startup. */
+    public PromptUsageStats getPromptUsageStats() {
+        return new PromptUsageStats(usageRequests.get(), usagePromptTokens.get(), usageCachedPromptTokens.get());
+    }
+
+    private void recordUsage(PromptType promptType, ChatCompletionParser.Usage usage) {
+        usageRequests.incrementAndGet();
+        usagePromptTokens.addAndGet(usage.promptTokens());
+        usageCachedPromptTokens.addAndGet(usage.cachedPromptTokens());
+        LOGGER.debug("{} usage: {} prompt tokens ({} cached prefix, {}%), {} completion tokens", promptType,
+                usage.promptTokens(), usage.cachedPromptTokens(), Math.round(usage.cachedRatio() * 100),
+                usage.completionTokens());
     }
 
     public void setModel(String model) {
@@ -57,235 +192,451 @@ public class AIChatService {
         return currentModel;
     }
 
-    public void sendMessage(String pageContent, String userQuestion, Callback callback) {
-        sendMessage(pageContent, userQuestion, PromptType.QUESTION, callback);
+    /**
+     * Sends a chat completion and delivers the answer incrementally. When streaming is enabled
+     * in the configuration the request asks for server-sent events and each token delta is
+     * passed to {@link StreamCallback#onDelta(String)} as soon as it is read; otherwise (or if the
+     * server ignores {@code "stream": true}) the whole answer arrives as a single delta.
+     * Answers found in the response cache are delivered immediately without a network call, and
+     * a request identical to one already in flight joins it instead of opening a second call.
+     *
+     * @return handle to cancel the request, e.g. when the page it was asked about goes away
+     */
+    public RequestHandle sendMessage(String pageContent, String userQuestion, PromptType promptType, StreamCallback callback) {
+        List<ChatRequestBody.Message> messages = buildMessages(pageContent, List.of(), userQuestion, promptType);
+        String requestKey = AIResponseCache.key(currentModel, promptType, pageContent, userQuestion);
+        return send(messages, requestKey, promptType, callback);
     }
 
-    public void sendMessage(String pageContent, String userQuestion, PromptType promptType, Callback callback) {
+    /**
+     * Asks a question as the next turn of {@code conversation}. The request carries the page
+     * context once, after the system prompt, followed by the earlier turns (or their rolling
+     * summary) and then this turn's instruction and task guidelines. When the answer completes
+     * (including when it is served from the response cache) the exchange is recorded in the
+     * conversation: only the instruction, without the guidelines, and only if the answer is not
+     * blank or an error.
+     */
+    public RequestHandle sendMessage(ConversationState conversation, String userQuestion, PromptType promptType,
+                                     StreamCallback callback) {
+        List<ChatRequestBody.Message> messages = conversationMessages(conversation, userQuestion, promptType);
+        RecordingCallback recording = new RecordingCallback(conversation, buildInstruction(userQuestion, promptType),
+                currentModel, callback);
+        return send(messages, conversationKey(conversation, userQuestion, promptType), promptType, recording);
+    }
+
+    /**
+     * Sends {@code messages}, serving the answer from the response cache or an identical request
+     * already in flight when possible.
+     */
+    private RequestHandle send(List<ChatRequestBody.Message> messages, String requestKey, PromptType promptType,
+                               StreamCallback callback) {
         String endpoint = configManager.getLitellmEndpoint();
         String apiKey = configManager.getLitellmApiKey();
 
         if (apiKey == null || apiKey.isBlank()) {
-            callback.onFailure(null, new IOException("API key not configured"));
-            return;
+            callback.onFailure(new IOException("API key not configured"));
+            return RequestHandle.NONE;
         }
 
         String url = buildUrl(endpoint);
 
-        String systemPrompt = promptType.getSystemPrompt() + DEFAULT_LANGUAGE_INSTRUCTION;
-        String userContent = buildUserContent(pageContent, userQuestion, promptType);
+        if (responseCache != null) {
+            String cached = responseCache.get(requestKey);
+            LOGGER.debug("Response cache {} for {} ({})", cached != null ? "hit" : "miss", promptType, responseCache.stats());
+            if (cached != null) {
+                callback.onDelta(cached);
+                callback.onComplete(cached);
+                return RequestHandle.NONE;
+            }
+        }
+
+        InFlightRequest flight = new InFlightRequest(requestKey);
+        flight.join(callback);
+        InFlightRequest existing;
+        while ((existing = inFlight.putIfAbsent(requestKey, flight)) != null) {
+            if (existing.join(callback)) {
+                LOGGER.debug("Joined in-flight {} request", promptType);
+                InFlightRequest joined = existing;
+                return () -> joined.leave(callback);
+            }
+            // The existing request finished between lookup and join; replace it.
+            inFlight.remove(requestKey, existing);
+        }
+        StreamCallback target = responseCache != null ? cachingCallback(requestKey, flight) : flight;
+
+        Request request = buildRequest(url, apiKey, currentModel, messages, configManager.isStreamingEnabled());
+        Call call = client.newCall(request);
+        flight.attach(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                target.onFailure(e);
+            }
 
-        sendRequest(url, apiKey, currentModel, systemPrompt, userContent, callback);
+            @Override
+            public void onResponse(Call call, Response response) {
+                LOGGER.debug("AI response via {} ({})", response.protocol(), getConnectionStats());
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        target.onFailure(new IOException("Unexpected response: " + response));
+                        return;
+                    }
+                    ResponseBody body = response.body();
+                    if (body == null) {
+                        target.onFailure(new IOException("Empty response body"));
+                        return;
+                    }
+                    MediaType contentType = body.contentType();
+                    if (contentType != null && "event-stream".equals(contentType.subtype())) {
+                        readEventStream(body.source(), promptType, target);
+                    } else {
+                        String result = readResponse(body.source(), promptType, target);
+                        target.onDelta(result);
+                        target.onComplete(result);
+                    }
+                } catch (IOException e) {
+                    target.onFailure(e);
+                } catch (RuntimeException e) {
+                    // Anything escaping into OkHttp's dispatcher would leave the flight and the UI waiting forever.
+                    LOGGER.warn("Failed to read AI response", e);
+                    target.onFailure(new IOException("Malformed AI response", e));
+                }
+            }
+        });
+        return () -> flight.leave(callback);
     }
 
-    public String sendMessageSync(String pageContent, String userQuestion) throws IOException {
-        return sendMessageSync(pageContent, userQuestion, PromptType.QUESTION);
+    /**
+     * Requests an answer in the background only to fill the response cache, e.g. the summary of
+     * a page the user is reading. Nothing is sent when caching is off, the answer is already
+     * cached, or other AI calls are running, so a prefetch never competes with a user request.
+     * A user asking the same thing while the prefetch is running joins it instead of sending a
+     * second request.
+     */
+    public RequestHandle prefetch(ConversationState conversation, String userQuestion, PromptType promptType) {
+        if (responseCache == null || client.dispatcher().runningCallsCount() > 0) {
+            return RequestHandle.NONE;
+        }
+        String requestKey = conversationKey(conversation, userQuestion, promptType);
+        if (responseCache.contains(requestKey)) {
+            return RequestHandle.NONE;
+        }
+        LOGGER.debug("Prefetching {} answer", promptType);
+        // Not recorded as a turn: the user has not asked yet. Asking later hits the cache and records it then.
+        return send(conversationMessages(conversation, userQuestion, promptType), requestKey, promptType, new StreamCallback() {
+            @Override
+            public void onDelta(String delta) {
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+                LOGGER.debug("Prefetched {} answer ({} chars)", promptType, fullText.length());
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                LOGGER.debug("Prefetch of {} answer failed: {}", promptType, e.getMessage());
+            }
+        });
     }
 
-    public String sendMessageSync(String pageContent, String userQuestion, PromptType promptType) throws IOException {
-        String endpoint = configManager.getLitellmEndpoint();
-        String apiKey = configManager.getLitellmApiKey();
+    /** Records a completed answer as a turn of its conversation before passing it on; errors are not recorded. */
+    private static final class RecordingCallback implements StreamCallback {
+        private final ConversationState conversation;
+        private final String instruction;
+        private final String model;
+        private final StreamCallback delegate;
+
+        RecordingCallback(ConversationState conversation, String instruction, String model, StreamCallback delegate) {
+            this.conversation = conversation;
+            this.instruction = instruction;
+            this.model = model;
+            this.delegate = delegate;
+        }
 
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IOException("API key not configured");
+        @Override
+        public void onDelta(String delta) {
+            delegate.onDelta(delta);
         }
 
-        String url = buildUrl(endpoint);
-        String systemPrompt = promptType.getSystemPrompt() + DEFAULT_LANGUAGE_INSTRUCTION;
-        String userContent = buildUserContent(pageContent, userQuestion, promptType);
+        @Override
+        public void onUsage(ChatCompletionParser.Usage usage) {
+            delegate.onUsage(usage);
+        }
 
-        try {
-            Response response = sendRequestSync(url, apiKey, currentModel, systemPrompt, userContent);
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected response: " + response);
+        @Override
+        public void onComplete(String fullText) {
+            if (!fullText.isBlank() && !fullText.startsWith("Error:")) {
+                conversation.addTurn(instruction, fullText, model);
             }
-            String responseBody = response.body() != null ? response.body().string() : "";
-            response.close();
-            return parseAIResponse(responseBody);
-        } catch (IOException e) {
-            throw e;
+            delegate.onComplete(fullText);
         }
-    }
 
-    private String buildUrl(String endpoint) {
-        String url = endpoint + "/chat/completions";
-        if (!url.startsWith("http")) {
-            url = "https://" + url;
-            if (!url.contains("/chat/completions")) {
-                url = url + "/chat/completions";
-            }
+        @Override
+        public void onFailure(IOException e) {
+            delegate.onFailure(e);
         }
-        return url;
     }
 
-    private String buildUserContent(String pageContent, String userQuestion, PromptType promptType) {
-        if (pageContent == null || pageContent.isBlank()) {
-            return userQuestion + "\n\n(No page content available)";
+    /**
+     * One network call shared by every caller that asked the same question while it was running.
+     * Late joiners first receive everything streamed so far as a single delta, then live deltas.
+     */
+    private final class InFlightRequest implements StreamCallback {
+        private final String key;
+        private final List<StreamCallback> subscribers = new ArrayList<>();
+        private final StringBuilder received = new StringBuilder();
+        private boolean done;
+        private Call call;
+
+        InFlightRequest(String key) {
+            this.key = key;
         }
 
-        return switch (promptType) {
-            case SUMMARIZE -> "Summarize this web page content:\n\n" + pageContent;
-            case EXTRACT_LINKS -> "Extract all URLs from this web page content. List each URL on a new line:\n\n" + pageContent;
-            case EXTRACT_CONTACT -> "Extract all contact information (emails, phones, addresses) from this web page content:\n\n" + pageContent;
-            case TRANSLATE -> userQuestion + "\n\nContent to translate:\n" + pageContent;
-            case READING_MODE -> "Extract the main readable content from this web page. Remove all navigation, ads, sidebars, and clutter. Return clean text:\n\n" + pageContent;
-            case HELP_CHOOSE_PRODUCT -> ("Help the user choose the right product from this page. " + (userQuestion != null && !userQuestion.isBlank() ? "User's priorities or context: " + userQuestion + "\n\n" : "") + "Page content:\n\n") + pageContent;
-            case PURCHASE_ADVICE -> ("Give smart purchase advice based on this page. " + (userQuestion != null && !userQuestion.isBlank() ? "User's question or context: " + userQuestion + "\n\n" : "") + "Page content:\n\n") + pageContent;
-            default -> "Web page content:\n" + pageContent + "\n\nQuestion: " + userQuestion;
-        };
-    }
+        synchronized void attach(Call call) {
+            this.call = call;
+        }
 
-    private void sendRequest(String url, String apiKey, String model, String systemPrompt, String userContent, Callback callback) {
-        String jsonBody = String.format("""
-                {
-                    "model": "%s",
-                    "messages": [
-                        {"role": "system", "content": "%s"},
-                        {"role": "user", "content": "%s"}
-                    ],
-                    "temperature": 0.7
+        /** Removes a subscriber; cancels the call once nobody is waiting for it any more. */
+        void leave(StreamCallback callback) {
+            Call toCancel = null;
+            synchronized (this) {
+                if (!subscribers.remove(callback) || !subscribers.isEmpty() || done) {
+                    return;
                 }
-                """,
-                escapeJson(model),
-                escapeJson(systemPrompt),
-                escapeJson(userContent)
-        );
+                done = true;
+                toCancel = call;
+            }
+            inFlight.remove(key, this);
+            if (toCancel != null) {
+                toCancel.cancel();
+                LOGGER.debug("Cancelled AI request with no remaining subscribers");
+            }
+        }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .addHeader("Content-Type", "application/json")
-                .post(RequestBody.create(jsonBody, JSON))
-                .build();
+        /** Adds a subscriber; returns false if the request has already finished. */
+        synchronized boolean join(StreamCallback callback) {
+            if (done) {
+                return false;
+            }
+            if (!received.isEmpty()) {
+                callback.onDelta(received.toString());
+            }
+            subscribers.add(callback);
+            return true;
+        }
+
+        @Override
+        public void onDelta(String delta) {
+            List<StreamCallback> targets;
+            synchronized (this) {
+                received.append(delta);
+                targets = List.copyOf(subscribers);
+            }
+            targets.forEach(t -> t.onDelta(delta));
+        }
+
+        @Override
+        public void onUsage(ChatCompletionParser.Usage usage) {
+            List<StreamCallback> targets;
+            synchronized (this) {
+                targets = List.copyOf(subscribers);
+            }
+            targets.forEach(t -> t.onUsage(usage));
+        }
+
+        @Override
+        public void onComplete(String fullText) {
+            finish().forEach(t -> t.onComplete(fullText));
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            finish().forEach(t -> t.onFailure(e));
+        }
 
-        client.newCall(request).enqueue(callback);
+        private List<StreamCallback> finish() {
+            inFlight.remove(key, this);
+            synchronized (this) {
+                done = true;
+                return List.copyOf(subscribers);
+            }
+        }
     }
 
-    private Response sendRequestSync(String url, String apiKey, String model, String systemPrompt, String userContent) throws IOException {
-        String jsonBody = String.format("""
-                {
-                    "model": "%s",
-                    "messages": [
-                        {"role": "system", "content": "%s"},
-                        {"role": "user", "content": "%s"}
-                    ],
-                    "temperature": 0.7
-                }
-                """,
-                escapeJson(model),
-                escapeJson(systemPrompt),
-                escapeJson(userContent)
-        );
+    /** Wraps {@code callback} so a successfully completed answer is stored under {@code cacheKey}. */
+    private StreamCallback cachingCallback(String cacheKey, StreamCallback callback) {
+        return new StreamCallback() {
+            @Override
+            public void onDelta(String delta) {
+                callback.onDelta(delta);
+            }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .addHeader("Content-Type", "application/json")
-                .post(RequestBody.create(jsonBody, JSON))
-                .build();
+            @Override
+            public void onUsage(ChatCompletionParser.Usage usage) {
+                callback.onUsage(usage);
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+                if (!fullText.startsWith("Error:")) {
+                    responseCache.put(cacheKey, fullText);
+                }
+                callback.onComplete(fullText);
+            }
 
-        return client.newCall(request).execute();
+            @Override
+            public void onFailure(IOException e) {
+                callback.onFailure(e);
+            }
+        };
     }
 
     /**
-     * Extracts the assistant message content from a chat completion JSON response.
-     * Looks for choices[0].message.content and parses the string value so that
-     * escaped quotes (e.g. in URLs or quoted product names) do not truncate the result.
+     * Reads an OpenAI-style server-sent event stream line by line, forwarding each
+     * {@code choices[0].delta.content} chunk as it arrives. Stops at {@code data: [DONE]}
+     * or end of stream. The usage block, sent in a final chunk without choices when
+     * {@code stream_options.include_usage} was requested, is reported before completion.
+     * An error event ({@code event: error}, or a chunk carrying an {@code error} object) fails the
+     * request instead, so the partial answer is neither completed nor cached.
      */
-    public String parseAIResponse(String jsonResponse) {
-        try {
-            // Target the content inside the assistant message, not any other "content" key
-            int messageStart = jsonResponse.indexOf("\"message\"");
-            if (messageStart == -1) {
-                return "Error: Could not parse AI response";
+    private void readEventStream(BufferedSource source, PromptType promptType, StreamCallback callback) throws IOException {
+        StringBuilder full = new StringBuilder();
+        ChatCompletionParser.Usage usage = null;
+        String line;
+        boolean errorEvent = false;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.startsWith("event:")) {
+                errorEvent = line.substring(6).trim().equals("error");
+                continue;
             }
-            int contentKeyStart = jsonResponse.indexOf("\"content\"", messageStart);
-            if (contentKeyStart == -1) {
-                return "Error: Could not parse AI response";
+            // Blank separators, comments (": keep-alive") and id: fields carry no content.
+            if (!line.startsWith("data:")) {
+                continue;
             }
-            int colonIndex = jsonResponse.indexOf(":", contentKeyStart);
-            int afterColon = colonIndex + 1;
-            while (afterColon < jsonResponse.length() && Character.isWhitespace(jsonResponse.charAt(afterColon))) {
-                afterColon++;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                break;
             }
-            if (afterColon < jsonResponse.length() && jsonResponse.charAt(afterColon) == '[') {
-                // content is array, e.g. [{"type":"text","text":"...actual response..."}]
-                int textKey = jsonResponse.indexOf("\"text\"", afterColon);
-                if (textKey != -1) {
-                    int textColon = jsonResponse.indexOf(":", textKey);
-                    int textQuoteStart = jsonResponse.indexOf("\"", textColon);
-                    if (textQuoteStart != -1) {
-                        int textQuoteEnd = findStringEnd(jsonResponse, textQuoteStart + 1);
-                        if (textQuoteEnd != -1) {
-                            String raw = jsonResponse.substring(textQuoteStart + 1, textQuoteEnd);
-                            return unescapeJsonString(raw);
-                        }
-                    }
+            ChatCompletionParser.Completion chunk;
+            try {
+                chunk = ChatCompletionParser.readCompletion(data, ChatCompletionParser.DELTA);
+            } catch (IOException e) {
+                if (!errorEvent) {
+                    throw e;
                 }
-                return "Error: Could not parse AI response";
+                chunk = new ChatCompletionParser.Completion(null, null, data);
             }
-            // content is a string
-            int quoteStart = jsonResponse.indexOf("\"", colonIndex);
-            if (quoteStart == -1 || quoteStart + 1 >= jsonResponse.length()) {
-                return "Error: Could not parse AI response";
+            if (errorEvent || chunk.error() != null) {
+                String message = chunk.error() != null ? chunk.error() : data;
+                LOGGER.warn("AI stream failed after {} chars: {}", full.length(), message);
+                callback.onFailure(new IOException("AI stream error: " + message));
+                return;
             }
-            int quoteEnd = findStringEnd(jsonResponse, quoteStart + 1);
-            if (quoteEnd == -1) {
-                return "Error: Could not parse AI response";
+            String delta = chunk.content();
+            if (delta != null && !delta.isEmpty()) {
+                full.append(delta);
+                callback.onDelta(delta);
             }
-            String raw = jsonResponse.substring(quoteStart + 1, quoteEnd);
-            return unescapeJsonString(raw);
-        } catch (Exception e) {
-            LOGGER.error("Failed to parse AI response", e);
-            return "Error: Could not parse AI response";
+            if (chunk.usage() != null) {
+                usage = chunk.usage();
+            }
+        }
+        if (usage != null) {
+            recordUsage(promptType, usage);
+            callback.onUsage(usage);
         }
+        callback.onComplete(full.toString());
     }
 
-    /** Finds the index of the closing double-quote of a JSON string, respecting \\ and \". */
-    private static int findStringEnd(String json, int start) {
-        for (int i = start; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '\\' && i + 1 < json.length()) {
-                i++; // skip next character (escaped)
-                continue;
-            }
-            if (c == '"') {
-                return i;
+    private String buildUrl(String endpoint) {
+        String url = endpoint + "/chat/completions";
+        if (!url.startsWith("http")) {
+            url = "https://" + url;
+            if (!url.contains("/chat/completions")) {
+                url = url + "/chat/completions";
             }
         }
-        return -1;
+        return url;
     }
 
-    /** Unescapes a JSON string value (e.g. \\n -> newline, \\" -> ", \\\\ -> \). */
-    private static String unescapeJsonString(String s) {
-        if (s == null || s.isEmpty()) return s;
-        StringBuilder sb = new StringBuilder(s.length());
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c == '\\' && i + 1 < s.length()) {
-                char next = s.charAt(i + 1);
-                switch (next) {
-                    case '"' -> sb.append('"');
-                    case '\\' -> sb.append('\\');
-                    case 'n' -> sb.append('\n');
-                    case 'r' -> sb.append('\r');
-                    case 't' -> sb.append('\t');
-                    default -> { sb.append('\\'); sb.append(next); }
-                }
-                i++;
-            } else {
-                sb.append(c);
-            }
-        }
-        return sb.toString();
+    /**
+     * Lays out a request so that everything stable comes first: the shared system prompt, then
+     * the page context, then earlier turns, and only then this request's instruction and task
+     * guidelines. Requests about the same page therefore start with byte-identical messages
+     * whatever their prompt type, which lets provider-side prompt caching reuse the prefix.
+     * Guidelines are only sent with the last message; earlier turns carry just their instruction.
+     */
+    private List<ChatRequestBody.Message> buildMessages(String pageContent, List<ChatRequestBody.Message> history,
+                                                        String userQuestion, PromptType promptType) {
+        List<ChatRequestBody.Message> messages = new ArrayList<>(history.size() + 3);
+        messages.add(new ChatRequestBody.Message("system", SYSTEM_PROMPT));
+        messages.add(new ChatRequestBody.Message("user", pageContent == null || pageContent.isBlank()
+                ? "(No page content available)" : ConversationState.PAGE_CONTEXT_HEADER + pageContent));
+        messages.addAll(history);
+        messages.add(new ChatRequestBody.Message("user",
+                buildInstruction(userQuestion, promptType) + "\n\nGuidelines: " + promptType.getTaskPrompt()));
+        return messages;
+    }
+
+    private List<ChatRequestBody.Message> conversationMessages(ConversationState conversation, String userQuestion,
+                                                               PromptType promptType) {
+        List<ChatRequestBody.Message> history = conversation.history();
+        LOGGER.debug("Conversation request: {} earlier messages, ~{} history tokens",
+                history.size(), conversation.historyTokens(currentModel));
+        return buildMessages(conversation.pageContext(), history, userQuestion, promptType);
     }
 
-    private String escapeJson(String text) {
-        if (text == null) return "";
-        return text.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    private String conversationKey(ConversationState conversation, String userQuestion, PromptType promptType) {
+        return AIResponseCache.key(currentModel, promptType, conversation.pageContext(), userQuestion,
+                conversation.historyDigest());
+    }
+
+    /** What this request asks for; the page context is sent in its own message before it. */
+    private String buildInstruction(String userQuestion, PromptType promptType) {
+        boolean hasQuestion = userQuestion != null && !userQuestion.isBlank();
+        return switch (promptType) {
+            case SUMMARIZE -> "Summarize this web page content.";
+            case EXTRACT_LINKS -> "Extract all URLs from this web page content. List each URL on a new line.";
+            case EXTRACT_CONTACT -> "Extract all contact information (emails, phones, addresses) from this web page content.";
+            case TRANSLATE -> userQuestion + "\n\nTranslate the web page content above.";
+            case READING_MODE -> "Extract the main readable content from this web page. Remove all navigation, ads, sidebars, and clutter. Return clean text.";
+            case HELP_CHOOSE_PRODUCT -> "Help the user choose the right product from this page." + (hasQuestion ? " User's priorities or context: " + userQuestion : "");
+            case PURCHASE_ADVICE -> "Give smart purchase advice based on this page." + (hasQuestion ? " User's question or context: " + userQuestion : "");
+            default -> "Question: " + userQuestion;
+        };
+    }
+
+    /**
+     * Builds the chat completion request shared by the sync and async paths. The body is
+     * serialized lazily by {@link ChatRequestBody} when OkHttp writes it to the connection.
+     */
+    private Request buildRequest(String url, String apiKey, String model, List<ChatRequestBody.Message> messages, boolean stream) {
+        ChatRequestBody body = new ChatRequestBody(model, messages, 0.7, stream, configManager.isStreamUsageEnabled());
+
+        return new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .post(body)
+                .build();
+    }
+
+    /**
+     * Reads a full (non-streaming) response including its usage block, which is recorded and
+     * passed to {@code callback}. Returns the content or an error text.
+     */
+    private String readResponse(BufferedSource source, PromptType promptType, StreamCallback callback) {
+        ChatCompletionParser.Completion completion;
+        try {
+            completion = ChatCompletionParser.readCompletion(source, ChatCompletionParser.MESSAGE);
+        } catch (Exception e) {
+            LOGGER.error("Failed to parse AI response", e);
+            return "Error: Could not parse AI response";
+        }
+        if (completion.usage() != null) {
+            recordUsage(promptType, completion.usage());
+            callback.onUsage(completion.usage());
+        }
+        return completion.content() != null ? completion.content() : "Error: Could not parse AI response";
     }
 }
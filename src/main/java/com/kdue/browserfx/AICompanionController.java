@@ -1,7 +1,7 @@
 package com.kdue.browserfx;
 
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -25,11 +25,15 @@ import javafx.scene.web.WebView;
 import javafx.animation.PauseTransition;
 import javafx.util.Duration;
 
-import java.text.Normalizer;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.Response;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,50 +79,127 @@ public class AICompanionController {
     /** Last page URL we extracted content for, to avoid redundant work. */
     private String currentPageUrl;
     private ObservableList<ChatEntry> messages = FXCollections.observableArrayList();
+    /** Rendered graphic per chat entry (by identity), dropped when the entry leaves the chat. */
+    private final Map<ChatEntry, javafx.scene.Node> cellGraphics = new IdentityHashMap<>();
     private boolean initialized = false;
     private boolean autoSummaryShown = false;
     private double fontSize = 14.0;
     /** Content last shown in reading mode; used to reload with new font size on A+/A-. */
     private String lastReadingModeContent;
+    /** Whether {@link #lastReadingModeContent} is a partial answer that is still streaming. */
+    private boolean readingModeContentPartial;
 
     private static final double MARKDOWN_VIEW_MAX_HEIGHT = 280;
 
+    /** Idle WebViews kept for chat bubbles that need HTML rendering. */
+    private static final int WEBVIEW_POOL_MAX_IDLE = 4;
+
+    /** Property key linking a cached bubble to its WebView slot, and the slot to its HTML document. */
+    private static final String WEBVIEW_SLOT_KEY = "webViewSlot";
+    /** Slot property: number of list cells currently showing the slot's entry. */
+    private static final String WEBVIEW_SLOT_USERS_KEY = "webViewSlotUsers";
+
+    /**
+     * Runs blocking work off the FX thread: answer post-processing (formatting, product matching,
+     * building bubble nodes) so neither OkHttp threads nor the FX thread do it, page analysis and
+     * thumbnail disk I/O.
+     */
+    private final BackgroundTasks backgroundTasks = BrowserApplication.backgroundTasks();
+
+    /** Applies UI changes from callbacks and background work once per pulse. */
+    private final UiUpdateBatcher uiUpdates = new UiUpdateBatcher();
+
+    private final WebViewPool webViewPool = new WebViewPool(WEBVIEW_POOL_MAX_IDLE);
+
+    /** Product card thumbnails, decoded at display size and persisted next to the WebView cache. */
+    private final ThumbnailCache thumbnailCache = new ThumbnailCache(56, 56,
+            Path.of(System.getProperty("user.home"), ".browserfx", "cache", "thumbnails"),
+            backgroundTasks.executor(BackgroundTasks.WorkType.DISK_IO));
+
+    /** Minimum interval between reading mode re-renders while an answer is streaming in. */
+    private static final double READING_MODE_STREAM_RENDER_MS = 250;
+
     /** Idle timeout in seconds (1.3 minutes) before auto-resetting the AI session. */
     private static final double IDLE_RESET_SECONDS = 78;
 
     private PauseTransition idleResetTimer;
 
+    /** Delay after a page load before the prefetch snapshot, leaving the first layout and paint pulses alone. */
+    private static final double PREFETCH_SNAPSHOT_DELAY_MS = 500;
+
+    /** Pending prefetch step for the current page (snapshot, then dwell before the summary). */
+    private PauseTransition prefetchTimer;
+    /** Background summary request for the current page, cancelled on navigation. */
+    private AIChatService.RequestHandle prefetchRequest = AIChatService.RequestHandle.NONE;
+
+    /** Conversation about the current page; dropped on navigation and when the chat is reset. */
+    private ConversationState conversation;
+
+    /** Snapshot the current {@link #productIndex} was built from. */
+    private PageSnapshot indexedSnapshot;
+    private ProductUrlIndex productIndex = ProductUrlIndex.EMPTY;
+
+    /** Handle of the AI request currently in flight, or null when idle. */
+    private AIChatService.RequestHandle activeRequest;
+    /** Live bubble of the answer currently streaming in, removed if the request is cancelled. */
+    private ChatEntry.StreamingMessage activeStreamingEntry;
+    /**
+     * Bumped whenever outstanding requests are cancelled; callbacks compare it with the value
+     * captured at send time and drop results that belong to a superseded request.
+     */
+    private long requestGeneration;
+
     @FXML
     public void initialize() {
         chatListView.setItems(messages);
+        // Cell graphics are built once per entry and reused when cells are recycled on scroll.
+        messages.addListener((ListChangeListener<ChatEntry>) change -> {
+            while (change.next()) {
+                for (ChatEntry removed : change.getRemoved()) {
+                    cellGraphics.remove(removed);
+                }
+            }
+        });
         chatListView.setCellFactory(listView -> new ListCell<>() {
+            /** WebView slot of the cached bubble this cell currently shows, if any. */
+            private StackPane pooledSlot;
+
             @Override
             protected void updateItem(ChatEntry item, boolean empty) {
                 super.updateItem(item, empty);
+                setText(null);
+                if (pooledSlot != null) {
+                    releaseSlotView(pooledSlot);
+                    pooledSlot = null;
+                }
                 if (empty || item == null) {
                     setGraphic(null);
-                    setText(null);
-                } else if (item instanceof ChatEntry.ProductCards cards) {
-                    VBox productCardsBox = createProductCardsView(cards.products());
-                    productCardsBox.setPrefWidth(320);
-                    setGraphic(productCardsBox);
-                    setText(null);
-                } else if (item instanceof ChatEntry.SuggestionButtons suggestions) {
-                    VBox suggestionsBox = createSuggestionButtonsView(suggestions.suggestions());
-                    suggestionsBox.setPrefWidth(320);
-                    setGraphic(suggestionsBox);
-                    setText(null);
-                } else {
-                    javafx.scene.Node graphic = createMessageCell(item.getDisplayText());
+                    return;
+                }
+                javafx.scene.Node graphic = cellGraphics.computeIfAbsent(item, AICompanionController.this::createCellGraphic);
+                if (graphic.getProperties().get(WEBVIEW_SLOT_KEY) instanceof StackPane slot) {
+                    pooledSlot = slot;
+                    acquireSlotView(slot);
+                }
+                setGraphic(graphic);
+            }
+
+            @Override
+            protected void layoutChildren() {
+                // The list's measuring cell may have borrowed this cached graphic; take it back.
+                javafx.scene.Node graphic = getGraphic();
+                if (graphic != null && graphic.getParent() == null) {
+                    setGraphic(null);
                     setGraphic(graphic);
-                    setText(null);
                 }
+                super.layoutChildren();
             }
         });
 
         modelSelector.setItems(FXCollections.observableArrayList(ConfigManager.AVAILABLE_MODELS));
         buildVirtualKeyboard();
         if (keywordSuggestionsBox != null) {
+            buildKeywordSuggestionButtons();
             keywordSuggestionsBox.setVisible(false);
             keywordSuggestionsBox.setManaged(false);
         }
@@ -127,6 +208,20 @@ public class AICompanionController {
         questionInput.caretPositionProperty().addListener((obs, oldPos, newPos) -> updateKeywordSuggestions());
 
         setupIdleResetTimer();
+        setupReadingModeWebView();
+    }
+
+    /** Registers the reading mode navigation intercept once; link clicks open in the browser. */
+    private void setupReadingModeWebView() {
+        readingModeWebView.setContextMenuEnabled(false);
+        readingModeWebView.getEngine().locationProperty().addListener((obs, oldLoc, newLoc) -> {
+            if (newLoc != null && (newLoc.startsWith("http://") || newLoc.startsWith("https://"))) {
+                openInBrowser(newLoc);
+                if (lastReadingModeContent != null) {
+                    readingModeWebView.getEngine().loadContent(readingModeDocument(), "text/html");
+                }
+            }
+        });
     }
 
     private static final String KEYBOARD_ROW_NUMBERS = "1234567890";
@@ -192,6 +287,20 @@ public class AICompanionController {
             "thấp nhất"
     );
 
+    private static final int MAX_KEYWORD_SUGGESTIONS = 5;
+
+    /** Built-in keywords until the config is loaded; then rebuilt with configured extras. */
+    private KeywordIndex keywordIndex = new KeywordIndex(KEYWORD_SUGGESTIONS);
+    private final List<Button> keywordSuggestionButtons = new ArrayList<>(MAX_KEYWORD_SUGGESTIONS);
+    /** Range of the word in the question input that the visible suggestions would replace. */
+    private int suggestionWordStart;
+    private int suggestionWordEnd;
+
+    /** Terms from the current page (product titles, frequent phrases); empty until built. */
+    private PageVocabulary pageVocabulary = PageVocabulary.EMPTY;
+    /** Page the vocabulary was (or is being) built for; null after navigation. */
+    private String pageVocabularyUrl;
+
     private boolean virtualKeyboardShift = false;
 
     private Button shiftButtonRef; // for updating Shift visual after one-shot use
@@ -278,11 +387,26 @@ public class AICompanionController {
     /** Hide keyword suggestions bar. */
     private void hideKeywordSuggestions() {
         if (keywordSuggestionsBox == null) return;
-        keywordSuggestionsBox.getChildren().clear();
         keywordSuggestionsBox.setVisible(false);
         keywordSuggestionsBox.setManaged(false);
     }
 
+    /** Creates the fixed set of suggestion buttons once; updates only change their text and visibility. */
+    private void buildKeywordSuggestionButtons() {
+        for (int i = 0; i < MAX_KEYWORD_SUGGESTIONS; i++) {
+            Button btn = new Button();
+            btn.setFocusTraversable(false);
+            btn.setStyle("-fx-font-size: 10; -fx-padding: 2 6; -fx-background-color: #e2e8f0; -fx-background-radius: 12;");
+            btn.setOnAction(e -> {
+                keywordIndex.recordUse(btn.getText());
+                pageVocabulary.recordUse(btn.getText());
+                replaceCurrentWord(suggestionWordStart, suggestionWordEnd, btn.getText());
+            });
+            keywordSuggestionButtons.add(btn);
+        }
+        keywordSuggestionsBox.getChildren().setAll(keywordSuggestionButtons);
+    }
+
     /** Update keyword suggestions based on the current word at the caret when using the virtual keyboard. */
     private void updateKeywordSuggestions() {
         if (keywordSuggestionsBox == null || questionInput == null) return;
@@ -323,36 +447,69 @@ public class AICompanionController {
             return;
         }
 
-        String normalizedWord = normalizeForMatch(currentWord);
-        List<String> matches = new ArrayList<>();
-        for (String keyword : KEYWORD_SUGGESTIONS) {
-            String normalizedKeyword = normalizeForMatch(keyword);
-            if (normalizedKeyword.startsWith(normalizedWord) && !normalizedKeyword.equals(normalizedWord)) {
-                matches.add(keyword);
-                if (matches.size() >= 5) break;
-            }
-        }
-
+        List<String> matches = suggestKeywords(currentWord);
         if (matches.isEmpty()) {
             hideKeywordSuggestions();
             return;
         }
 
-        keywordSuggestionsBox.getChildren().clear();
-        final int wordStart = start;
-        final int wordEnd = end;
-        for (String match : matches) {
-            Button btn = new Button(match);
-            btn.setFocusTraversable(false);
-            btn.setStyle("-fx-font-size: 10; -fx-padding: 2 6; -fx-background-color: #e2e8f0; -fx-background-radius: 12;");
-            btn.setOnAction(e -> replaceCurrentWord(wordStart, wordEnd, match));
-            keywordSuggestionsBox.getChildren().add(btn);
+        suggestionWordStart = start;
+        suggestionWordEnd = end;
+        for (int i = 0; i < keywordSuggestionButtons.size(); i++) {
+            Button btn = keywordSuggestionButtons.get(i);
+            boolean used = i < matches.size();
+            if (used) {
+                btn.setText(matches.get(i));
+            }
+            btn.setVisible(used);
+            btn.setManaged(used);
         }
 
         keywordSuggestionsBox.setVisible(true);
         keywordSuggestionsBox.setManaged(true);
     }
 
+    /**
+     * Page terms and built-in keywords for {@code word}: page terms get up to half the slots
+     * (rounded up) so commands stay reachable, then each source fills what the other left free.
+     */
+    private List<String> suggestKeywords(String word) {
+        List<String> pageTerms = pageVocabulary.suggest(word, MAX_KEYWORD_SUGGESTIONS);
+        List<String> keywords = keywordIndex.suggest(word, MAX_KEYWORD_SUGGESTIONS);
+        int pageSlots = Math.max((MAX_KEYWORD_SUGGESTIONS + 1) / 2, MAX_KEYWORD_SUGGESTIONS - keywords.size());
+        List<String> matches = new ArrayList<>(MAX_KEYWORD_SUGGESTIONS);
+        Set<String> seen = new HashSet<>();
+        for (String term : pageTerms.subList(0, Math.min(pageSlots, pageTerms.size()))) {
+            if (seen.add(KeywordIndex.normalize(term))) matches.add(term);
+        }
+        for (String keyword : keywords) {
+            if (matches.size() >= MAX_KEYWORD_SUGGESTIONS) break;
+            if (seen.add(KeywordIndex.normalize(keyword))) matches.add(keyword);
+        }
+        return matches;
+    }
+
+    /**
+     * Builds the page vocabulary for the current page once, from a snapshot taken here on the FX
+     * thread; the indexing itself runs in the background. Only needed while the keyboard is shown.
+     */
+    private void ensurePageVocabulary() {
+        if (!initialized || !virtualKeyboardGrid.isVisible()) return;
+        String pageUrl = contentExtractor.getPageUrl();
+        if (pageUrl == null || pageUrl.equals(pageVocabularyUrl)) return;
+        pageVocabularyUrl = pageUrl;
+        PageSnapshot snapshot = snapshotSafe();
+        backgroundTasks.execute(BackgroundTasks.WorkType.PAGE_ANALYSIS, () -> {
+            PageVocabulary vocabulary = PageVocabulary.build(snapshot);
+            uiUpdates.post(() -> {
+                if (!pageUrl.equals(pageVocabularyUrl)) return;
+                pageVocabulary = vocabulary;
+                LOGGER.debug("Page vocabulary: {} terms", vocabulary.size());
+                updateKeywordSuggestions();
+            });
+        });
+    }
+
     /** Replace the word at the given range with the chosen suggestion and keep caret after it. */
     private void replaceCurrentWord(int start, int end, String replacement) {
         if (questionInput == null) return;
@@ -364,15 +521,6 @@ public class AICompanionController {
         updateKeywordSuggestions();
     }
 
-    /** Normalize text for keyword matching: lowercase + remove Vietnamese diacritics. */
-    private static String normalizeForMatch(String s) {
-        if (s == null) return "";
-        String normalized = Normalizer.normalize(s, Normalizer.Form.NFD);
-        // Strip combining diacritical marks so "tóm tắt" matches "tom tat".
-        normalized = normalized.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        return normalized.toLowerCase();
-    }
-
     /**
      * Format raw AI text for easier reading in the chat view.
      * Currently:
@@ -399,6 +547,7 @@ public class AICompanionController {
         if (!virtualKeyboardGrid.isVisible()) {
             hideKeywordSuggestions();
         } else {
+            ensurePageVocabulary();
             updateKeywordSuggestions();
         }
     }
@@ -411,26 +560,7 @@ public class AICompanionController {
             card.setStyle("-fx-padding: 6; -fx-background-color: white; -fx-background-radius: 4; -fx-cursor: hand;");
             card.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
 
-            StackPane thumbContainer = new StackPane();
-            thumbContainer.setMinSize(56, 56);
-            thumbContainer.setMaxSize(56, 56);
-            String imgUrl = (p.imageUrl() != null && !p.imageUrl().isBlank()) ? p.imageUrl().trim() : null;
-            if (imgUrl != null) {
-                ImageView thumb = new ImageView();
-                thumb.setFitWidth(56);
-                thumb.setFitHeight(56);
-                thumb.setPreserveRatio(true);
-                Image img = new Image(imgUrl, true);
-                thumb.setImage(img);
-                img.errorProperty().addListener((o, prev, err) -> {
-                    if (Boolean.TRUE.equals(err)) {
-                        Platform.runLater(() -> thumbContainer.getChildren().setAll(createThumbPlaceholder()));
-                    }
-                });
-                thumbContainer.getChildren().setAll(thumb);
-            } else {
-                thumbContainer.getChildren().setAll(createThumbPlaceholder());
-            }
+            StackPane thumbContainer = createThumbnail(p.imageUrl());
 
             VBox info = new VBox(2);
             Label titleLabel = new Label(truncate(p.title(), 40));
@@ -466,6 +596,39 @@ public class AICompanionController {
         return s.substring(0, maxLen) + "…";
     }
 
+    /**
+     * 56x56 thumbnail for {@code imageUrl} loaded through the shared {@link ThumbnailCache}; shows
+     * a placeholder when there is no URL or the image fails to load.
+     */
+    private StackPane createThumbnail(String imageUrl) {
+        StackPane thumbContainer = new StackPane();
+        thumbContainer.setMinSize(56, 56);
+        thumbContainer.setMaxSize(56, 56);
+        String imgUrl = (imageUrl != null && !imageUrl.isBlank()) ? imageUrl.trim() : null;
+        if (imgUrl == null) {
+            thumbContainer.getChildren().setAll(createThumbPlaceholder());
+            return thumbContainer;
+        }
+        ImageView thumb = new ImageView();
+        thumb.setFitWidth(56);
+        thumb.setFitHeight(56);
+        thumb.setPreserveRatio(true);
+        CompletableFuture<Image> img = thumbnailCache.load(imgUrl);
+        if (img.state() == Future.State.SUCCESS) {
+            thumb.setImage(img.resultNow());
+        } else {
+            img.whenComplete((loaded, err) -> uiUpdates.post(() -> {
+                if (loaded != null) {
+                    thumb.setImage(loaded);
+                } else {
+                    thumbContainer.getChildren().setAll(createThumbPlaceholder());
+                }
+            }));
+        }
+        thumbContainer.getChildren().setAll(thumb);
+        return thumbContainer;
+    }
+
     /** Placeholder when product has no image URL or image failed to load. */
     private javafx.scene.Node createThumbPlaceholder() {
         VBox box = new VBox();
@@ -481,7 +644,7 @@ public class AICompanionController {
 
     private void openInBrowser(String url) {
         if (webEngine != null && url != null && !url.isBlank()) {
-            Platform.runLater(() -> webEngine.load(url));
+            uiUpdates.post(() -> webEngine.load(url));
         }
     }
 
@@ -549,6 +712,55 @@ public class AICompanionController {
         }
     }
 
+    /**
+     * Fills a bubble's WebView slot from the pool when the first cell starts showing its entry.
+     * The list's measuring cell may show the same entry as the visible cell, so the slot counts its
+     * users and keeps one shared view instead of each cell taking its own.
+     */
+    private void acquireSlotView(StackPane slot) {
+        int users = (Integer) slot.getProperties().getOrDefault(WEBVIEW_SLOT_USERS_KEY, 0);
+        slot.getProperties().put(WEBVIEW_SLOT_USERS_KEY, users + 1);
+        if (users == 0) {
+            WebView view = webViewPool.acquire((String) slot.getProperties().get(WEBVIEW_SLOT_KEY), this::openInBrowser);
+            view.setPrefWidth(320);
+            view.setMaxHeight(MARKDOWN_VIEW_MAX_HEIGHT);
+            slot.getChildren().setAll(view);
+        }
+    }
+
+    /** Returns the slot's WebView to the pool once no cell shows its entry any more. */
+    private void releaseSlotView(StackPane slot) {
+        int users = (Integer) slot.getProperties().getOrDefault(WEBVIEW_SLOT_USERS_KEY, 1) - 1;
+        if (users > 0) {
+            slot.getProperties().put(WEBVIEW_SLOT_USERS_KEY, users);
+            return;
+        }
+        slot.getProperties().remove(WEBVIEW_SLOT_USERS_KEY);
+        for (javafx.scene.Node child : List.copyOf(slot.getChildren())) {
+            if (child instanceof WebView view) {
+                slot.getChildren().remove(view);
+                webViewPool.release(view);
+            }
+        }
+    }
+
+    private javafx.scene.Node createCellGraphic(ChatEntry item) {
+        if (item instanceof ChatEntry.ProductCards cards) {
+            VBox productCardsBox = createProductCardsView(cards.products());
+            productCardsBox.setPrefWidth(320);
+            return productCardsBox;
+        }
+        if (item instanceof ChatEntry.StreamingMessage streaming) {
+            return createStreamingMessageCell(streaming);
+        }
+        if (item instanceof ChatEntry.SuggestionButtons suggestions) {
+            VBox suggestionsBox = createSuggestionButtonsView(suggestions.suggestions());
+            suggestionsBox.setPrefWidth(320);
+            return suggestionsBox;
+        }
+        return createMessageCell(item.getDisplayText());
+    }
+
     /** Result of parsing sender prefix; null label and prefixLen 0 means use TextFlow for full text. */
     private record MessagePrefix(String label, int prefixLength, boolean useMarkdown, boolean showCopy) {}
 
@@ -564,34 +776,59 @@ public class AICompanionController {
         return new MessagePrefix(null, 0, false, false);
     }
 
-    /** Returns either a WebView-based cell (for AI/Summary markdown) or a TextFlow (otherwise). */
-    private javafx.scene.Node createMessageCell(String text) {
+    /**
+     * A message prepared for display without creating any nodes: sender prefix, markdown body and
+     * its parsed document, and the HTML document when it will be shown in a pooled WebView.
+     */
+    private record ParsedMessage(String text, MessagePrefix prefix, String body,
+                                 org.commonmark.node.Node document, String webViewHtml) {}
+
+    /** Parses {@code text} for {@link #createMessageCell(ParsedMessage)}; safe to call on any thread. */
+    private ParsedMessage parseMessage(String text) {
         MessagePrefix prefix = parseMessagePrefix(text);
         if (!prefix.useMarkdown()) {
-            TextFlow flow = createTextFlow(text);
+            return new ParsedMessage(text, prefix, null, null, null);
+        }
+        String rawBody = text.substring(prefix.prefixLength());
+        String body = rawBody.startsWith(" ") ? rawBody.substring(1) : rawBody;
+        org.commonmark.node.Node document = MarkdownNodeRenderer.parse(body);
+        String webViewHtml = configManager != null && configManager.isWebViewForComplexMarkdown()
+                && MarkdownNodeRenderer.needsWebView(body, document)
+                ? MarkdownRenderer.toHtmlDocument(body) : null;
+        return new ParsedMessage(text, prefix, body, document, webViewHtml);
+    }
+
+    private javafx.scene.Node createMessageCell(String text) {
+        return createMessageCell(parseMessage(text));
+    }
+
+    /**
+     * Returns a markdown bubble for AI/Summary/Links messages or a TextFlow otherwise. Markdown is
+     * rendered to native nodes, with images shown as cached thumbnails; a WebView is only used for
+     * complex content (HTML, images, tables) when {@code ai.chat.webview_for_complex} is enabled.
+     * Must be called on the FX thread.
+     */
+    private javafx.scene.Node createMessageCell(ParsedMessage message) {
+        MessagePrefix prefix = message.prefix();
+        if (!prefix.useMarkdown()) {
+            TextFlow flow = createTextFlow(message.text());
             flow.setPrefWidth(320);
             VBox bubble = new VBox(flow);
             bubble.setStyle("-fx-padding: 6 8; -fx-background-radius: 8; -fx-background-color: #edf2f7;");
             return bubble;
         }
-        String rawBody = text.substring(prefix.prefixLength());
-        final String body = rawBody.startsWith(" ") ? rawBody.substring(1) : rawBody;
-        String html = MarkdownRenderer.toHtmlDocument(body);
-        WebView webView = new WebView();
-        webView.setPrefWidth(320);
-        webView.setMaxHeight(MARKDOWN_VIEW_MAX_HEIGHT);
-        webView.setContextMenuEnabled(false);
-        webView.getProperties().put("markdownContent", html);
-        webView.getEngine().loadContent(html, "text/html");
-        webView.getEngine().locationProperty().addListener((obs, oldLoc, newLoc) -> {
-            if (newLoc != null && (newLoc.startsWith("http://") || newLoc.startsWith("https://"))) {
-                openInBrowser(newLoc);
-                String content = (String) webView.getProperties().get("markdownContent");
-                if (content != null) {
-                    webView.getEngine().loadContent(content, "text/html");
-                }
-            }
-        });
+        String body = message.body();
+        javafx.scene.Node content;
+        if (message.webViewHtml() != null) {
+            // Only the slot is cached; the list cell showing this entry fills it with a pooled WebView.
+            StackPane slot = new StackPane();
+            slot.setPrefWidth(320);
+            slot.setMaxHeight(MARKDOWN_VIEW_MAX_HEIGHT);
+            slot.getProperties().put(WEBVIEW_SLOT_KEY, message.webViewHtml());
+            content = slot;
+        } else {
+            content = MarkdownNodeRenderer.render(message.document(), this::openInBrowser, this::createThumbnail);
+        }
         VBox box = new VBox(4);
         box.setPrefWidth(320);
         box.setStyle("-fx-padding: 6 8; -fx-background-radius: 8; -fx-background-color: #f7fafc;");
@@ -599,7 +836,10 @@ public class AICompanionController {
         String labelColor = prefix.label().startsWith("Summary") ? "#805ad5" : "#2f855a";
         prefixLabel.setStyle("-fx-font-size: 12; -fx-font-weight: bold; -fx-text-fill: " + labelColor + ";");
         box.getChildren().add(prefixLabel);
-        box.getChildren().add(webView);
+        box.getChildren().add(content);
+        if (content instanceof StackPane) {
+            box.getProperties().put(WEBVIEW_SLOT_KEY, content);
+        }
         if (prefix.showCopy()) {
             Button copyBtn = new Button("📋 Copy");
             copyBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: #4299e1; -fx-font-size: 10;");
@@ -609,6 +849,24 @@ public class AICompanionController {
         return box;
     }
 
+    /**
+     * Bubble for an answer that is still streaming. Deltas go to an {@link IncrementalMarkdownRenderer},
+     * which keeps finished blocks and re-renders only the block still being written.
+     */
+    private javafx.scene.Node createStreamingMessageCell(ChatEntry.StreamingMessage streaming) {
+        VBox box = new VBox(4);
+        box.setPrefWidth(320);
+        box.setStyle("-fx-padding: 6 8; -fx-background-radius: 8; -fx-background-color: #f7fafc;");
+        Label prefixLabel = new Label(streaming.sender());
+        String labelColor = streaming.sender().startsWith("Summary") ? "#805ad5" : "#2f855a";
+        prefixLabel.setStyle("-fx-font-size: 12; -fx-font-weight: bold; -fx-text-fill: " + labelColor + ";");
+        IncrementalMarkdownRenderer renderer = new IncrementalMarkdownRenderer(this::openInBrowser);
+        renderer.append(streaming.text());
+        streaming.setOnAppend(renderer::append);
+        box.getChildren().addAll(prefixLabel, renderer.view());
+        return box;
+    }
+
     private TextFlow createTextFlow(String text) {
         TextFlow flow = new TextFlow();
         if (text.startsWith("You:")) {
@@ -673,11 +931,19 @@ public class AICompanionController {
         this.chatService = new AIChatService(configManager);
         this.initialized = true;
 
+        List<String> keywords = new ArrayList<>(KEYWORD_SUGGESTIONS);
+        keywords.addAll(configManager.getExtraKeywords());
+        keywordIndex = new KeywordIndex(keywords);
+
         String savedModel = configManager.getLitellmModel();
         modelSelector.getSelectionModel().select(savedModel);
         chatService.setModel(savedModel);
 
-        Platform.runLater(() -> {
+        if (configManager.isConfigured() && configManager.isHttpWarmupEnabled()) {
+            chatService.warmUp();
+        }
+
+        uiUpdates.post(() -> {
             statusLabel.setText("Ready. Configure API key in " + ConfigManager.getConfigDirDescription());
         });
     }
@@ -703,6 +969,7 @@ public class AICompanionController {
         alert.showAndWait().ifPresent(result -> {
             if (result == ButtonType.OK) {
                 messages.clear();
+                conversation = null;
                 autoSummaryShown = false;
             }
         });
@@ -789,36 +1056,7 @@ public class AICompanionController {
         loadingIndicator.setManaged(true);
         statusLabel.setText("Summarizing...");
 
-        String content = extractContentSafe();
-        chatService.sendMessage(content, "", AIChatService.PromptType.SUMMARIZE, new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> handleError(e));
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (!response.isSuccessful()) {
-                        Platform.runLater(() -> addMessage("AI", "Error: " + response));
-                        return;
-                    }
-                    String body = response.body() != null ? response.body().string() : "";
-                    String parsedResult = chatService.parseAIResponse(body);
-                    String formattedResult = formatAiTextForReadability(parsedResult);
-                    Platform.runLater(() -> {
-                        addMessage("Summary:", formattedResult);
-                        showSuggestedQuestions();
-                    });
-                } finally {
-                    response.close();
-                    Platform.runLater(() -> {
-                        loadingIndicator.setVisible(false);
-                        setInteractionEnabled(true);
-                    });
-                }
-            }
-        });
+        streamAnswer(conversationFor(snapshotSafe()), "", AIChatService.PromptType.SUMMARIZE, "Summary:", ProductUrlIndex.EMPTY, this::showSuggestedQuestions);
     }
 
     @FXML
@@ -833,21 +1071,21 @@ public class AICompanionController {
         loadingIndicator.setVisible(true);
         statusLabel.setText("Extracting links...");
 
-        String content = extractContentWithLinksSafe();
-        
-        new Thread(() -> {
+        PageSnapshot snapshot = snapshotSafe();
+
+        backgroundTasks.execute(BackgroundTasks.WorkType.PAGE_ANALYSIS, () -> {
             try {
-                String links = extractLinksFromContent(content);
-                Platform.runLater(() -> {
+                String links = extractLinksFromSnapshot(snapshot);
+                uiUpdates.post(() -> {
                     addMessage("📎 Links:", "\n" + linksListToMarkdown(links));
                     loadingIndicator.setVisible(false);
                     statusLabel.setText("Found links");
                     setInteractionEnabled(true);
                 });
             } catch (Exception e) {
-                Platform.runLater(() -> handleError(e));
+                uiUpdates.post(() -> handleError(e));
             }
-        }).start();
+        });
     }
 
     @FXML
@@ -862,7 +1100,7 @@ public class AICompanionController {
         loadingIndicator.setManaged(true);
         statusLabel.setText("Đang hiển thị thông tin liên hệ...");
 
-        Platform.runLater(() -> {
+        uiUpdates.post(() -> {
             addMessage("📧 Contacts:", "\n" + DE_ED_CONTACT_INFO);
             loadingIndicator.setVisible(false);
             loadingIndicator.setManaged(false);
@@ -884,47 +1122,14 @@ public class AICompanionController {
         loadingIndicator.setManaged(true);
         statusLabel.setText("Comparing products...");
 
-        String content = appendProductInfoToContent(extractContentWithLinksSafe());
+        PageSnapshot snapshot = snapshotSafe();
+        ConversationState pageConversation = conversationFor(snapshot);
         String userContext = questionInput.getText().trim();
         if (!userContext.isEmpty()) {
             questionInput.clear();
         }
-        chatService.sendMessage(content, userContext.isEmpty() ? "Compare options and recommend the best fit for a typical buyer." : userContext, AIChatService.PromptType.HELP_CHOOSE_PRODUCT, new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> handleError(e));
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (!response.isSuccessful()) {
-                        Platform.runLater(() -> addMessage("AI", "Error: " + response));
-                        return;
-                    }
-                    String body = response.body() != null ? response.body().string() : "";
-                    String result = chatService.parseAIResponse(body);
-                    result = formatAiTextForReadability(result);
-                    List<ProductInfo> cardProducts = productsForResponse(result);
-                    String finalText = appendProductsMarkdownToResponse(result);
-                    Platform.runLater(() -> {
-                        addMessage("AI", finalText);
-                        if (!cardProducts.isEmpty()) {
-                            messages.add(new ChatEntry.ProductCards(cardProducts));
-                            chatListView.scrollTo(messages.size() - 1);
-                        }
-                        showProductSuggestedQuestions();
-                    });
-                } finally {
-                    response.close();
-                    Platform.runLater(() -> {
-                        loadingIndicator.setVisible(false);
-                        statusLabel.setText("Ready");
-                        setInteractionEnabled(true);
-                    });
-                }
-            }
-        });
+        String question = userContext.isEmpty() ? "Compare options and recommend the best fit for a typical buyer." : userContext;
+        streamAnswer(pageConversation, question, AIChatService.PromptType.HELP_CHOOSE_PRODUCT, "AI", productIndexFor(snapshot), this::showProductSuggestedQuestions);
     }
 
     @FXML
@@ -940,47 +1145,14 @@ public class AICompanionController {
         loadingIndicator.setManaged(true);
         statusLabel.setText("Getting purchase advice...");
 
-        String content = appendProductInfoToContent(extractContentWithLinksSafe());
+        PageSnapshot snapshot = snapshotSafe();
+        ConversationState pageConversation = conversationFor(snapshot);
         String userContext = questionInput.getText().trim();
         if (!userContext.isEmpty()) {
             questionInput.clear();
         }
-        chatService.sendMessage(content, userContext.isEmpty() ? "Give honest purchase advice: value, any real urgency, and whether this is a good buy." : userContext, AIChatService.PromptType.PURCHASE_ADVICE, new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> handleError(e));
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (!response.isSuccessful()) {
-                        Platform.runLater(() -> addMessage("AI", "Error: " + response));
-                        return;
-                    }
-                    String body = response.body() != null ? response.body().string() : "";
-                    String result = chatService.parseAIResponse(body);
-                    result = formatAiTextForReadability(result);
-                    List<ProductInfo> cardProducts = productsForResponse(result);
-                    String finalText = appendProductsMarkdownToResponse(result);
-                    Platform.runLater(() -> {
-                        addMessage("AI", finalText);
-                        if (!cardProducts.isEmpty()) {
-                            messages.add(new ChatEntry.ProductCards(cardProducts));
-                            chatListView.scrollTo(messages.size() - 1);
-                        }
-                        showProductSuggestedQuestions();
-                    });
-                } finally {
-                    response.close();
-                    Platform.runLater(() -> {
-                        loadingIndicator.setVisible(false);
-                        statusLabel.setText("Ready");
-                        setInteractionEnabled(true);
-                    });
-                }
-            }
-        });
+        String question = userContext.isEmpty() ? "Give honest purchase advice: value, any real urgency, and whether this is a good buy." : userContext;
+        streamAnswer(pageConversation, question, AIChatService.PromptType.PURCHASE_ADVICE, "AI", productIndexFor(snapshot), this::showProductSuggestedQuestions);
     }
 
     @FXML
@@ -991,56 +1163,101 @@ public class AICompanionController {
         loadingIndicator.setVisible(true);
         statusLabel.setText("Loading reading mode...");
 
-        String content = extractContentSafe();
-        chatService.sendMessage(content, "", AIChatService.PromptType.READING_MODE, new Callback() {
+        // Same page context as the chat requests, so this request shares their cached prompt prefix.
+        String content = conversationFor(snapshotSafe()).pageContext();
+        StringBuilder streamed = new StringBuilder();
+        long generation = requestGeneration;
+        activeRequest = chatService.sendMessage(content, "", AIChatService.PromptType.READING_MODE, new AIChatService.StreamCallback() {
+            /** True while a throttled re-render of the reading panel is scheduled. */
+            private boolean renderPending;
+            private boolean shown;
+
             @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> handleError(e));
+            public void onDelta(String delta) {
+                synchronized (streamed) {
+                    streamed.append(delta);
+                }
+                uiUpdates.postCoalesced(streamed, () -> {
+                    if (generation != requestGeneration) return;
+                    if (!shown) {
+                        shown = true;
+                        showReadingMode(streamedText(), true);
+                    } else if (!renderPending) {
+                        renderPending = true;
+                        PauseTransition throttle = new PauseTransition(Duration.millis(READING_MODE_STREAM_RENDER_MS));
+                        throttle.setOnFinished(e -> {
+                            renderPending = false;
+                            if (generation == requestGeneration && readingModePanel.isVisible()) {
+                                updateReadingModeContent(streamedText(), true);
+                            }
+                        });
+                        throttle.play();
+                    }
+                });
+            }
+
+            private String streamedText() {
+                synchronized (streamed) {
+                    return streamed.toString();
+                }
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (!response.isSuccessful()) {
-                        Platform.runLater(() -> showError("Error: " + response));
-                        return;
+            public void onComplete(String fullText) {
+                uiUpdates.post(() -> {
+                    if (generation != requestGeneration) return;
+                    activeRequest = null;
+                    if (readingModePanel.isVisible()) {
+                        updateReadingModeContent(fullText, false);
+                    } else {
+                        showReadingMode(fullText, false);
                     }
-                    String body = response.body() != null ? response.body().string() : "";
-                    String cleanText = chatService.parseAIResponse(body);
-                    Platform.runLater(() -> {
-                        showReadingMode(cleanText);
-                    });
-                } finally {
-                    response.close();
-                    Platform.runLater(() -> {
-                        loadingIndicator.setVisible(false);
-                        setInteractionEnabled(true);
-                    });
-                }
+                    loadingIndicator.setVisible(false);
+                    setInteractionEnabled(true);
+                });
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                uiUpdates.post(() -> {
+                    if (generation != requestGeneration) return;
+                    activeRequest = null;
+                    handleError(e);
+                    setInteractionEnabled(true);
+                });
             }
         });
     }
 
-    private void showReadingMode(String content) {
+    private void showReadingMode(String content, boolean partial) {
         readingModePanel.setVisible(true);
         readingModePanel.setManaged(true);
         chatListView.setVisible(false);
         chatListView.setManaged(false);
 
+        updateReadingModeContent(content, partial);
+        statusLabel.setText("Reading Mode - Use A+/A- to resize");
+    }
+
+    /**
+     * Replaces the reading mode document without touching panel visibility or listeners.
+     * Partial content from a streaming answer is rendered without the document cache; only
+     * the final document is cached.
+     */
+    private void updateReadingModeContent(String content, boolean partial) {
         lastReadingModeContent = content;
-        String html = MarkdownRenderer.toHtmlDocument(content, getReadingModeCss());
+        readingModeContentPartial = partial;
+        String html = readingModeDocument();
+        if (!partial) {
+            LOGGER.debug("Markdown document cache: {}", MarkdownRenderer.cacheStats());
+        }
         readingModeWebView.getEngine().loadContent(html, "text/html");
-        readingModeWebView.setContextMenuEnabled(false);
-        readingModeWebView.getEngine().locationProperty().addListener((obs, oldLoc, newLoc) -> {
-            if (newLoc != null && (newLoc.startsWith("http://") || newLoc.startsWith("https://"))) {
-                openInBrowser(newLoc);
-                if (lastReadingModeContent != null) {
-                    readingModeWebView.getEngine().loadContent(
-                            MarkdownRenderer.toHtmlDocument(lastReadingModeContent, getReadingModeCss()), "text/html");
-                }
-            }
-        });
-        statusLabel.setText("Reading Mode - Use A+/A- to resize");
+    }
+
+    private String readingModeDocument() {
+        return readingModeContentPartial
+                ? MarkdownRenderer.toHtmlDocumentUncached(lastReadingModeContent, getReadingModeCss())
+                : MarkdownRenderer.toHtmlDocument(lastReadingModeContent, getReadingModeCss());
     }
 
     private String getReadingModeCss() {
@@ -1062,6 +1279,8 @@ public class AICompanionController {
 
     @FXML
     public void onCloseReadingMode() {
+        // Blank the document so a hidden reading view does not keep the page's DOM alive.
+        readingModeWebView.getEngine().loadContent("", "text/html");
         readingModePanel.setVisible(false);
         readingModePanel.setManaged(false);
         chatListView.setVisible(true);
@@ -1083,12 +1302,12 @@ public class AICompanionController {
 
     private void updateReadingFont() {
         if (!readingModePanel.isVisible() || lastReadingModeContent == null) return;
-        readingModeWebView.getEngine().loadContent(
-                MarkdownRenderer.toHtmlDocument(lastReadingModeContent, getReadingModeCss()), "text/html");
+        readingModeWebView.getEngine().loadContent(readingModeDocument(), "text/html");
     }
 
     @FXML
     public void onClose() {
+        cancelActiveRequest();
         if (onCloseCallback != null) {
             onCloseCallback.run();
         }
@@ -1097,23 +1316,16 @@ public class AICompanionController {
     public void refreshPageContent() {
         if (!initialized || webEngine == null) return;
 
-        Platform.runLater(() -> {
+        uiUpdates.post(() -> {
             String pageUrl = contentExtractor.getPageUrl();
-            // Skip re-extracting if we already have content for this URL.
-            if (pageUrl != null
-                    && pageUrl.equals(currentPageUrl)
-                    && currentPageContent != null
-                    && !currentPageContent.isBlank()) {
-                statusLabel.setText("Page loaded: " + currentPageTitle);
-                return;
-            }
-
+            // The extractor reuses its snapshot while URL and DOM are unchanged, so this is cheap.
             loadingIndicator.setVisible(true);
             statusLabel.setText("Reading page...");
 
             try {
-                currentPageContent = contentExtractor.extractContent();
-                currentPageTitle = contentExtractor.getPageTitle();
+                PageSnapshot snapshot = contentExtractor.snapshot();
+                currentPageContent = snapshot.text();
+                currentPageTitle = snapshot.title();
                 currentPageUrl = pageUrl;
                 loadingIndicator.setVisible(false);
                 if (currentPageContent != null && !currentPageContent.isBlank()) {
@@ -1137,44 +1349,197 @@ public class AICompanionController {
         loadingIndicator.setManaged(true);
         statusLabel.setText("Getting answer...");
 
-        String content = appendProductInfoToContent(extractContentWithLinksSafe());
-        chatService.sendMessage(content, question, promptType, new Callback() {
+        PageSnapshot snapshot = snapshotSafe();
+        streamAnswer(conversationFor(snapshot), question, promptType, "AI", productIndexFor(snapshot), null);
+    }
+
+    /**
+     * Sends a request as the next turn of {@code pageConversation} and streams the answer into a
+     * live chat bubble so the first tokens show up immediately. When the stream completes the bubble is replaced by the final formatted
+     * message (plus cards for the {@code pageProducts} the answer refers to) and {@code onSuccess}
+     * runs. {@code pageProducts} is an immutable index of the snapshot taken on the FX thread
+     * before sending, so post-processing in the background never touches the page.
+     * Must be called on the FX thread.
+     */
+    private void streamAnswer(ConversationState pageConversation, String question, AIChatService.PromptType promptType,
+                              String sender, ProductUrlIndex pageProducts, Runnable onSuccess) {
+        ChatEntry.StreamingMessage streaming = new ChatEntry.StreamingMessage(sender);
+        long generation = requestGeneration;
+        activeStreamingEntry = streaming;
+        activeRequest = chatService.sendMessage(pageConversation, question, promptType, new AIChatService.StreamCallback() {
+            /** Deltas received since the last pulse; appended to the bubble in one go. */
+            private final StringBuilder pendingDeltas = new StringBuilder();
+
             @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> handleError(e));
+            public void onDelta(String delta) {
+                synchronized (pendingDeltas) {
+                    pendingDeltas.append(delta);
+                }
+                uiUpdates.postCoalesced(streaming, () -> {
+                    String text;
+                    synchronized (pendingDeltas) {
+                        text = pendingDeltas.toString();
+                        pendingDeltas.setLength(0);
+                    }
+                    if (generation != requestGeneration) return;
+                    if (!messages.contains(streaming)) {
+                        messages.add(streaming);
+                        trimMessagesIfNeeded();
+                        chatListView.scrollTo(messages.size() - 1);
+                    }
+                    streaming.append(text);
+                });
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (!response.isSuccessful()) {
-                        Platform.runLater(() -> addMessage("AI", "Error: " + response));
-                        return;
+            public void onComplete(String fullText) {
+                backgroundTasks.execute(BackgroundTasks.WorkType.AI_RESPONSE, () -> finishAnswer(fullText));
+            }
+
+            /**
+             * Runs as a background task: formatting, product matching and markdown building and
+             * parsing happen here; the FX thread only creates the bubble's nodes and inserts them.
+             */
+            private void finishAnswer(String fullText) {
+                String result = formatAiTextForReadability(fullText);
+                List<ProductInfo> cardProducts = productsForResponse(result, pageProducts);
+                String finalText = appendProductsMarkdownToResponse(result, cardProducts);
+                ChatEntry finalEntry = new ChatEntry.TextMessage(sender + finalText);
+                ParsedMessage parsed = parseMessage(finalEntry.getDisplayText());
+                ChatEntry cardsEntry = cardProducts.isEmpty() ? null : new ChatEntry.ProductCards(cardProducts);
+                uiUpdates.post(() -> {
+                    if (generation != requestGeneration) return;
+                    javafx.scene.Node finalGraphic = createMessageCell(parsed);
+                    activeRequest = null;
+                    activeStreamingEntry = null;
+                    cellGraphics.put(finalEntry, finalGraphic);
+                    int index = messages.indexOf(streaming);
+                    if (index >= 0) {
+                        messages.set(index, finalEntry);
+                    } else {
+                        messages.add(finalEntry);
+                        trimMessagesIfNeeded();
                     }
-                    String body = response.body() != null ? response.body().string() : "";
-                    String result = chatService.parseAIResponse(body);
-                    result = formatAiTextForReadability(result);
-                    List<ProductInfo> cardProducts = productsForResponse(result);
-                    String finalText = appendProductsMarkdownToResponse(result);
-                    Platform.runLater(() -> {
-                        addMessage("AI", finalText);
-                        if (!cardProducts.isEmpty()) {
-                            messages.add(new ChatEntry.ProductCards(cardProducts));
-                            chatListView.scrollTo(messages.size() - 1);
-                        }
-                    });
-                } finally {
-                    response.close();
-                    Platform.runLater(() -> {
-                        loadingIndicator.setVisible(false);
-                        statusLabel.setText("Ready");
-                        setInteractionEnabled(true);
-                    });
-                }
+                    if (cardsEntry != null) {
+                        cellGraphics.put(cardsEntry, createCellGraphic(cardsEntry));
+                        messages.add(cardsEntry);
+                    }
+                    chatListView.scrollTo(messages.size() - 1);
+                    if (onSuccess != null) {
+                        onSuccess.run();
+                    }
+                    LOGGER.debug("UI updates: {}, prompt cache: {}", uiUpdates.stats(), chatService.getPromptUsageStats());
+                    loadingIndicator.setVisible(false);
+                    statusLabel.setText("Ready");
+                    setInteractionEnabled(true);
+                });
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                uiUpdates.post(() -> {
+                    if (generation != requestGeneration) return;
+                    activeRequest = null;
+                    activeStreamingEntry = null;
+                    messages.remove(streaming);
+                    handleError(e);
+                    setInteractionEnabled(true);
+                });
             }
         });
     }
 
+    /**
+     * Cancels the AI request in flight (if any) and discards its partial answer, so a
+     * superseded request neither renders into the chat nor holds a connection until timeout.
+     */
+    private void cancelActiveRequest() {
+        requestGeneration++;
+        if (activeRequest == null) {
+            return;
+        }
+        activeRequest.cancel();
+        activeRequest = null;
+        if (activeStreamingEntry != null) {
+            messages.remove(activeStreamingEntry);
+            activeStreamingEntry = null;
+        }
+        if (loadingIndicator != null) {
+            loadingIndicator.setVisible(false);
+        }
+        setInteractionEnabled(true);
+    }
+
+    /**
+     * Called by the browser when it starts navigating to a different page. The old page's
+     * snapshot is dropped, and any answer still being generated refers to it, so it is cancelled.
+     */
+    public void onPageChanged() {
+        if (!initialized) return;
+        cancelPrefetch();
+        conversation = null;
+        pageVocabulary = PageVocabulary.EMPTY;
+        pageVocabularyUrl = null;
+        contentExtractor.invalidateSnapshot();
+        if (activeRequest != null) {
+            cancelActiveRequest();
+            statusLabel.setText("Request cancelled: page changed");
+        }
+    }
+
+    /**
+     * Called by the browser after a page has finished loading (and site tweaks were applied),
+     * so a snapshot taken mid-load is discarded and DOM changes are tracked from now on.
+     */
+    public void onPageLoaded() {
+        if (!initialized) return;
+        contentExtractor.onPageLoaded();
+        schedulePrefetch();
+        ensurePageVocabulary();
+    }
+
+    /**
+     * With {@code ai.prefetch.enabled}, takes the page snapshot shortly after load so the first
+     * question does not pay for extraction. With {@code ai.prefetch.summary} as well, a summary is
+     * requested in the background once the user has stayed on the page for the configured dwell
+     * time; it lands in the response cache, so pressing "Summarize" afterwards is instant.
+     */
+    private void schedulePrefetch() {
+        cancelPrefetch();
+        if (!configManager.isPrefetchEnabled()) return;
+        String pageUrl = contentExtractor.getPageUrl();
+        prefetchTimer = new PauseTransition(Duration.millis(PREFETCH_SNAPSHOT_DELAY_MS));
+        prefetchTimer.setOnFinished(e -> {
+            PageSnapshot snapshot = snapshotSafe();
+            if (snapshot.isEmpty() || !configManager.isPrefetchSummaryEnabled() || !configManager.isConfigured()) {
+                prefetchTimer = null;
+                return;
+            }
+            prefetchTimer = new PauseTransition(Duration.millis(configManager.getPrefetchSummaryDwellMillis()));
+            prefetchTimer.setOnFinished(dwell -> {
+                prefetchTimer = null;
+                prefetchSummary(pageUrl);
+            });
+            prefetchTimer.play();
+        });
+        prefetchTimer.play();
+    }
+
+    private void prefetchSummary(String pageUrl) {
+        // A user request in flight takes priority; it may well be the summary itself.
+        if (activeRequest != null || !Objects.equals(pageUrl, contentExtractor.getPageUrl())) return;
+        prefetchRequest = chatService.prefetch(conversationFor(snapshotSafe()), "", AIChatService.PromptType.SUMMARIZE);
+    }
+
+    private void cancelPrefetch() {
+        if (prefetchTimer != null) {
+            prefetchTimer.stop();
+            prefetchTimer = null;
+        }
+        prefetchRequest.cancel();
+        prefetchRequest = AIChatService.RequestHandle.NONE;
+    }
+
     /**
      * Enable/disable primary interaction controls while a request is in flight.
      * Keeps quick actions usable only when the assistant is ready.
@@ -1206,62 +1571,56 @@ public class AICompanionController {
         }
     }
 
-    private String extractContentSafe() {
+    private PageSnapshot snapshotSafe() {
         try {
-            return contentExtractor.extractContent();
+            return contentExtractor.snapshot();
         } catch (Exception e) {
-            LOGGER.error("Failed to extract content", e);
-            return "";
+            LOGGER.error("Failed to take page snapshot", e);
+            return PageSnapshot.EMPTY;
         }
     }
 
-    private String extractContentWithLinksSafe() {
-        try {
-            return contentExtractor.extractContentWithLinks();
-        } catch (Exception e) {
-            LOGGER.error("Failed to extract content with links", e);
-            return extractContentSafe();
+    /**
+     * Returns the conversation about the current page, starting one with the page context from
+     * {@code snapshot} if there is none yet. Until the first answer arrives the context is rebuilt
+     * from each new snapshot, so content that appeared after load is included; after that it stays
+     * fixed, keeping the requests of the conversation consistent with each other.
+     */
+    private ConversationState conversationFor(PageSnapshot snapshot) {
+        String pageUrl = contentExtractor.getPageUrl();
+        if (conversation != null && Objects.equals(conversation.pageKey(), pageUrl) && conversation.hasHistory()) {
+            return conversation;
+        }
+        String context = buildContext(snapshot, true);
+        if (conversation == null || !Objects.equals(conversation.pageKey(), pageUrl)
+                || !context.equals(conversation.pageContext())) {
+            conversation = new ConversationState(pageUrl, context, configManager.getHistoryMaxTokens());
         }
+        return conversation;
     }
 
     /**
-     * Appends a "Products on page" section (title | URL | price) to content when product cards
-     * are available, so the AI receives explicit product info for help-choose and purchase-advice flows.
+     * Builds the prompt context for the current model: page text and, when {@code withLinksAndProducts}
+     * is set, the "Additional links" section and a "Products on page" table, all fitted into the
+     * configured token budget by {@link ContextAssembler}.
      */
-    private String appendProductInfoToContent(String content) {
-        if (content == null) content = "";
-        try {
-            List<ProductInfo> products = contentExtractor.extractProducts();
-            if (products == null || products.isEmpty()) return content;
-            StringBuilder sb = new StringBuilder(content);
-            sb.append("\n\nProducts on page (title | URL | price):\n");
-            for (ProductInfo p : products) {
-                sb.append(p.title()).append(" | ").append(p.url()).append(" | ").append(p.price());
-                if (p.addToCartLabel() != null && !p.addToCartLabel().isBlank()) {
-                    sb.append(" | Add to cart: ").append(p.addToCartLabel());
-                }
-                sb.append("\n");
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            LOGGER.debug("Could not append product info to content", e);
-            return content;
-        }
+    private String buildContext(PageSnapshot snapshot, boolean withLinksAndProducts) {
+        return ContextAssembler.assemble(chatService.getModel(), configManager.getContextMaxTokens(),
+                snapshot.text(),
+                withLinksAndProducts ? snapshot.links() : List.of(),
+                withLinksAndProducts ? snapshot.products() : List.of());
     }
 
-    private String extractLinksFromContent(String content) {
-        if (content == null || content.isBlank()) {
+    private String extractLinksFromSnapshot(PageSnapshot snapshot) {
+        if (snapshot.isEmpty()) {
             return "No content available";
         }
 
-        // Prefer parsing the "Additional links found on page" section (linkText: url lines)
-        int sectionIdx = content.indexOf("Additional links found on page:");
-        if (sectionIdx != -1) {
-            String linksSection = content.substring(sectionIdx + "Additional links found on page:".length()).trim();
-            String[] lines = linksSection.split("\n");
+        // Prefer the snapshot's "linkText: url" lines
+        if (!snapshot.links().isEmpty()) {
             StringBuilder links = new StringBuilder();
             int count = 0;
-            for (String line : lines) {
+            for (String line : snapshot.links()) {
                 line = line.trim();
                 if (!line.isBlank()) {
                     links.append(line).append("\n");
@@ -1272,6 +1631,7 @@ public class AICompanionController {
                 return links.toString() + "\n(Total: " + count + " links)";
             }
         }
+        String content = snapshot.text();
 
         // Fallback: regex-based URL extraction
         Pattern urlPattern = Pattern.compile("https?://[\\w\\-._~:/?#\\[\\]@!$&'()*+,;=%]+", Pattern.CASE_INSENSITIVE);
@@ -1392,9 +1752,13 @@ public class AICompanionController {
      * short status message is shown so the user understands why history is gone.
      */
     private void resetSession(boolean triggeredByIdle) {
+        cancelActiveRequest();
+        cancelPrefetch();
         messages.clear();
+        conversation = null;
         autoSummaryShown = false;
         lastReadingModeContent = null;
+        readingModeContentPartial = false;
         currentPageContent = null;
         currentPageTitle = null;
         currentPageUrl = null;
@@ -1453,14 +1817,12 @@ public class AICompanionController {
     }
 
     /**
-     * Appends a markdown list of products to the AI response text. When the AI response mentions
-     * specific product URLs, only those products are included; otherwise all products on the page
-     * are listed.
+     * Appends a markdown list of {@code products} (as chosen by {@link #productsForResponse}) to the
+     * AI response text.
      */
-    private String appendProductsMarkdownToResponse(String aiResponseBody) {
+    private String appendProductsMarkdownToResponse(String aiResponseBody, List<ProductInfo> products) {
         if (aiResponseBody == null || aiResponseBody.isBlank()) return aiResponseBody;
         try {
-            List<ProductInfo> products = productsForResponse(aiResponseBody);
             if (products.isEmpty()) return aiResponseBody;
             StringBuilder sb = new StringBuilder(aiResponseBody);
             sb.append("\n\n---\nSản phẩm trên trang:\n");
@@ -1488,69 +1850,25 @@ public class AICompanionController {
         }
     }
 
-    /** For UI: compute list of products to show based on the AI response body. */
-    private List<ProductInfo> productsForResponse(String aiResponseBody) {
-        try {
-            List<ProductInfo> pageProducts = contentExtractor != null ? contentExtractor.extractProducts() : List.of();
-            if (pageProducts == null || pageProducts.isEmpty() || aiResponseBody == null || aiResponseBody.isBlank()) {
-                return List.of();
-            }
-            List<ProductInfo> products = productsMentionedInResponse(pageProducts, aiResponseBody);
-            if (products.isEmpty()) {
-                products = pageProducts;
-            }
-            return products;
-        } catch (Exception e) {
-            LOGGER.debug("Could not compute products for response", e);
+    /**
+     * For UI: compute list of products to show based on the AI response body. When the response
+     * mentions specific product URLs only those are returned; otherwise all {@code pageProducts}.
+     */
+    private List<ProductInfo> productsForResponse(String aiResponseBody, ProductUrlIndex pageProducts) {
+        if (pageProducts.isEmpty() || aiResponseBody == null || aiResponseBody.isBlank()) {
             return List.of();
         }
+        List<ProductInfo> products = pageProducts.mentionedIn(aiResponseBody);
+        return products.isEmpty() ? pageProducts.products() : products;
     }
 
-    /** Returns products whose URL appears in the AI response (markdown or plain). */
-    private List<ProductInfo> productsMentionedInResponse(List<ProductInfo> products, String aiResponseBody) {
-        if (products == null || aiResponseBody == null || aiResponseBody.isBlank()) return List.of();
-        List<ProductInfo> out = new ArrayList<>();
-        for (ProductInfo p : products) {
-            String url = p.url();
-            if (url == null || url.isBlank()) continue;
-            if (urlInResponse(url, aiResponseBody)) out.add(p);
+    /** Product URL index for {@code snapshot}, built once per snapshot. FX thread only. */
+    private ProductUrlIndex productIndexFor(PageSnapshot snapshot) {
+        if (snapshot != indexedSnapshot) {
+            indexedSnapshot = snapshot;
+            productIndex = new ProductUrlIndex(snapshot.products());
         }
-        return out;
-    }
-
-    private static final Pattern MARKDOWN_LINK_URL = Pattern.compile("\\]\\(\\s*(https?://[^)\\s]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BARE_URL = Pattern.compile("https?://[\\w\\-._~:/?#\\[\\]@!$&'()*+,;=%]+", Pattern.CASE_INSENSITIVE);
-
-    private boolean urlInResponse(String productUrl, String aiResponseBody) {
-        String norm = normalizeUrlForMatch(productUrl);
-        // Check direct containment (AI often pastes full URL)
-        if (norm.length() > 10 && aiResponseBody.contains(norm)) return true;
-        if (productUrl.length() > 10 && aiResponseBody.contains(productUrl)) return true;
-        // Check extracted URLs from markdown and bare URLs
-        Matcher md = MARKDOWN_LINK_URL.matcher(aiResponseBody);
-        while (md.find()) {
-            String u = md.group(1).trim();
-            if (urlsMatch(productUrl, u)) return true;
-        }
-        Matcher bare = BARE_URL.matcher(aiResponseBody);
-        while (bare.find()) {
-            if (urlsMatch(productUrl, bare.group())) return true;
-        }
-        return false;
-    }
-
-    private static String normalizeUrlForMatch(String url) {
-        if (url == null) return "";
-        String s = url.trim();
-        if (s.endsWith("/")) s = s.substring(0, s.length() - 1);
-        return s;
-    }
-
-    private static boolean urlsMatch(String a, String b) {
-        if (a == null || b == null) return false;
-        String na = normalizeUrlForMatch(a);
-        String nb = normalizeUrlForMatch(b);
-        return na.equals(nb) || a.contains(nb) || b.contains(na);
+        return productIndex;
     }
 
     private Runnable onCloseCallback;
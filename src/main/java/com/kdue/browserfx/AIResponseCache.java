@@ -0,0 +1,306 @@
+package com.kdue.browserfx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bounded cache of AI answers keyed by model, prompt type, normalized page content and question.
+ * The in-memory tier is an LRU map evicted by entry count and total answer size; entries expire
+ * after a fixed TTL. An optional on-disk tier (one file per key) lets warm answers survive restarts:
+ * it is pruned and loaded into memory by a background task at startup, stores are written through
+ * in the background, and answers evicted from memory are deleted from disk as well, so the disk
+ * tier never holds more than the memory tier. Lookups only read memory, so they are cheap on the
+ * FX thread.
+ * Thread-safe: lookups happen on the FX thread, stores on OkHttp threads.
+ */
+public final class AIResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AIResponseCache.class);
+    private static final String FILE_SUFFIX = ".answer";
+
+    /** Snapshot of cache counters for logging. */
+    public record Stats(long hits, long misses, int entries, long chars) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(String answer, long createdAtMillis) {}
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final long ttlMillis;
+    private final Executor diskExecutor;
+    /** Null when the disk tier is off or its directory turned out to be unusable. */
+    private volatile Path diskDir;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalChars;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param diskDir directory for the persistent tier, or null to keep answers in memory only
+     * @param diskExecutor runs the initial load of the disk tier and writes to it
+     */
+    public AIResponseCache(int maxEntries, long maxChars, Duration ttl, Path diskDir, Executor diskExecutor) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxChars = Math.max(1, maxChars);
+        this.ttlMillis = ttl.toMillis();
+        this.diskExecutor = diskExecutor;
+        this.diskDir = diskDir;
+        if (diskDir != null) {
+            diskExecutor.execute(() -> loadFromDisk(diskDir));
+        }
+    }
+
+    /**
+     * Builds a stable key. Page content and question are whitespace-normalized (and the question
+     * lower-cased) so trivial differences in extraction or typing still hit the same entry.
+     */
+    public static String key(String model, AIChatService.PromptType promptType, String pageContent, String question) {
+        return key(model, promptType, pageContent, question, "");
+    }
+
+    /**
+     * Key for a request that follows earlier turns; {@code historyDigest} is
+     * {@link ConversationState#historyDigest()}, empty for the first question about a page.
+     */
+    public static String key(String model, AIChatService.PromptType promptType, String pageContent, String question,
+                             String historyDigest) {
+        MessageDigest digest = sha256();
+        digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(promptType.name().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalize(pageContent).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalize(question).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        if (historyDigest != null && !historyDigest.isEmpty()) {
+            digest.update((byte) 0);
+            digest.update(historyDigest.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached answer, or null on a miss. Only memory is consulted; answers from the
+     * disk tier are available once the startup load has brought them into memory.
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.createdAtMillis() <= ttlMillis) {
+                hits.incrementAndGet();
+                return entry.answer();
+            }
+            remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Whether a fresh answer is held in memory; does not count as a hit or miss. */
+    public synchronized boolean contains(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && System.currentTimeMillis() - entry.createdAtMillis() <= ttlMillis;
+    }
+
+    public void put(String key, String answer) {
+        if (answer == null || answer.isBlank()) {
+            return;
+        }
+        Entry entry = new Entry(answer, System.currentTimeMillis());
+        synchronized (this) {
+            store(key, entry);
+        }
+        if (diskDir != null) {
+            diskExecutor.execute(() -> writeToDisk(key, entry));
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), entries.size(), totalChars);
+    }
+
+    private void store(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        totalChars += entry.answer().length();
+        trim(entry);
+    }
+
+    /**
+     * Evicts the least recently used entries until the limits hold again, stopping at {@code keep}
+     * (the entry just stored, never evicted). Evicted answers are deleted from disk too.
+     */
+    private void trim(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalChars > maxChars) && eldest.hasNext()) {
+            Map.Entry<String, Entry> e = eldest.next();
+            if (e.getValue() == keep) {
+                break;
+            }
+            totalChars -= e.getValue().answer().length();
+            eldest.remove();
+            deleteFromDisk(e.getKey());
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalChars -= removed.answer().length();
+        }
+    }
+
+    /**
+     * Prunes the disk tier, then loads the newest answers that fit the memory limits; files that
+     * do not fit are deleted. Loaded answers rank as older than anything stored since startup,
+     * which is never replaced, and among themselves keep the order of their file times.
+     */
+    private void loadFromDisk(Path dir) {
+        List<Path> files = prepareDiskDir(dir);
+        if (files == null) {
+            diskDir = null;
+            return;
+        }
+        List<Map.Entry<String, Entry>> loaded = new ArrayList<>();
+        long loadedChars = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+            try {
+                long createdAt = Files.getLastModifiedTime(file).toMillis();
+                Entry entry = new Entry(Files.readString(file, StandardCharsets.UTF_8), createdAt);
+                if (loadedChars + entry.answer().length() > maxChars) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                loadedChars += entry.answer().length();
+                loaded.add(Map.entry(key, entry));
+            } catch (IOException e) {
+                LOGGER.debug("Failed to read cached answer {}", file, e);
+            }
+        }
+        synchronized (this) {
+            Map<String, Entry> stored = new LinkedHashMap<>(entries);
+            entries.clear();
+            for (int i = loaded.size() - 1; i >= 0; i--) {
+                Map.Entry<String, Entry> e = loaded.get(i);
+                if (!stored.containsKey(e.getKey())) {
+                    entries.put(e.getKey(), e.getValue());
+                    totalChars += e.getValue().answer().length();
+                }
+            }
+            entries.putAll(stored);
+            trim(null);
+        }
+        LOGGER.debug("Loaded {} cached answers from {}", loaded.size(), dir);
+    }
+
+    private void deleteFromDisk(String key) {
+        Path dir = diskDir;
+        if (dir == null) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            try {
+                Files.deleteIfExists(dir.resolve(key + FILE_SUFFIX));
+            } catch (IOException e) {
+                LOGGER.debug("Failed to delete cached answer {}", key, e);
+            }
+        });
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        if (diskDir == null) {
+            return;
+        }
+        Path file = diskDir.resolve(key + FILE_SUFFIX);
+        try {
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.writeString(tmp, entry.answer(), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(entry.createdAtMillis()));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to persist cached answer {}", file, e);
+        }
+    }
+
+    /**
+     * Creates the disk directory and drops expired answers plus the oldest ones beyond
+     * {@code maxEntries}, so the persistent tier stays as bounded as the memory tier.
+     * Returns the remaining answer files, newest first, or null if the directory is unusable.
+     */
+    private List<Path> prepareDiskDir(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            long now = System.currentTimeMillis();
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(dir)) {
+                files = stream.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX))
+                        .sorted((a, b) -> Long.compare(lastModified(b), lastModified(a)))
+                        .toList();
+            }
+            List<Path> kept = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                if (i >= maxEntries || now - lastModified(file) > ttlMillis) {
+                    Files.deleteIfExists(file);
+                } else {
+                    kept.add(file);
+                }
+            }
+            return kept;
+        } catch (IOException e) {
+            LOGGER.warn("AI answer disk cache disabled: cannot use {}", dir, e);
+            return null;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.replaceAll("\\s+", " ").trim();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.kdue.browserfx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide executor for blocking background work, owned by {@link BrowserApplication}.
+ * Every task runs on its own virtual thread named after its {@link WorkType}; a fair semaphore per
+ * work type caps how many tasks of that type run at once, and the rest wait in arrival order.
+ * The time a task spends waiting for a permit is recorded per work type.
+ */
+public final class BackgroundTasks {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundTasks.class);
+
+    /** Queue wait above which a task start is logged at debug level. */
+    private static final long SLOW_START_NANOS = 250_000_000;
+
+    /** Kinds of background work, each with its own thread name prefix and concurrency limit. */
+    public enum WorkType {
+        /** Post-processing of completed answers; one at a time so answers are finished in order. */
+        AI_RESPONSE("ai-response", 1),
+        /** Work on page snapshots: link extraction, page vocabulary. */
+        PAGE_ANALYSIS("page-analysis", 2),
+        /** Thumbnail and AI response cache reads, writes and pruning. */
+        DISK_IO("disk-io", 2);
+
+        private final String threadName;
+        private final int maxConcurrency;
+
+        WorkType(String threadName, int maxConcurrency) {
+            this.threadName = threadName;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int maxConcurrency() {
+            return maxConcurrency;
+        }
+    }
+
+    /** Counters for one work type since startup. */
+    public record Stats(long submitted, long completed, long failed, int running, int waiting,
+                        long totalWaitNanos, long maxWaitNanos) {
+        public double averageWaitMillis() {
+            long started = completed + failed + running;
+            return started == 0 ? 0 : totalWaitNanos / 1_000_000.0 / started;
+        }
+    }
+
+    private final Map<WorkType, Lane> lanes = new EnumMap<>(WorkType.class);
+
+    public BackgroundTasks() {
+        for (WorkType type : WorkType.values()) {
+            lanes.put(type, new Lane(type));
+        }
+    }
+
+    /** Runs {@code task} in the background; failures are logged. */
+    public void execute(WorkType type, Runnable task) {
+        lanes.get(type).submit(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Background task failed ({})", type.threadName, e);
+                throw e;
+            }
+        });
+    }
+
+    /** Runs {@code task} in the background and completes the returned future with its result. */
+    public <T> CompletableFuture<T> submit(WorkType type, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            lanes.get(type).submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(task.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /** An {@link Executor} view of one work type, for APIs that take an executor. */
+    public Executor executor(WorkType type) {
+        return task -> execute(type, task);
+    }
+
+    public Stats stats(WorkType type) {
+        return lanes.get(type).stats();
+    }
+
+    /**
+     * Stops accepting tasks and waits up to {@code timeoutMillis} for running and queued tasks;
+     * whatever is left after that is interrupted. Safe to call more than once.
+     */
+    public void shutdown(long timeoutMillis) {
+        for (Lane lane : lanes.values()) {
+            lane.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Lane lane : lanes.values()) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (!lane.executor.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                    LOGGER.warn("Interrupting unfinished {} tasks", lane.type.threadName);
+                    lane.executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (WorkType type : WorkType.values()) {
+            Stats stats = stats(type);
+            if (stats.submitted() > 0) {
+                LOGGER.debug("{}: {} tasks, {} failed, avg wait {} ms, max wait {} ms", type.threadName,
+                        stats.submitted(), stats.failed(), String.format("%.1f", stats.averageWaitMillis()),
+                        stats.maxWaitNanos() / 1_000_000);
+            }
+        }
+    }
+
+    /** Executor, permit pool and counters of one work type. */
+    private static final class Lane {
+        private final WorkType type;
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        Lane(WorkType type) {
+            this.type = type;
+            this.executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("bg-" + type.threadName + "-", 0).factory());
+            this.permits = new Semaphore(type.maxConcurrency, true);
+        }
+
+        void submit(Runnable task) {
+            long queuedAt = System.nanoTime();
+            executor.execute(() -> run(task, queuedAt));
+            submitted.incrementAndGet();
+        }
+
+        private void run(Runnable task, long queuedAt) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                failed.incrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long wait = System.nanoTime() - queuedAt;
+            totalWaitNanos.addAndGet(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            if (wait > SLOW_START_NANOS) {
+                LOGGER.debug("{} task waited {} ms for a slot", type.threadName, wait / 1_000_000);
+            }
+            running.incrementAndGet();
+            try {
+                task.run();
+                completed.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+            } finally {
+                running.decrementAndGet();
+                permits.release();
+            }
+        }
+
+        Stats stats() {
+            return new Stats(submitted.get(), completed.get(), failed.get(), running.get(),
+                    permits.getQueueLength(), totalWaitNanos.get(), maxWaitNanos.get());
+        }
+    }
+}
@@ -19,6 +19,22 @@ public class BrowserApplication extends Application {
     private static final double WINDOW_WIDTH = 1024;
     private static final double WINDOW_HEIGHT = 768;
     private static final String WINDOW_TITLE = "BrowserFX";
+    /** How long queued background work may take to finish on exit. */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2000;
+
+    private static final BackgroundTasks BACKGROUND_TASKS = new BackgroundTasks();
+
+    /** Shared executor for blocking background work; shut down when the application exits. */
+    public static BackgroundTasks backgroundTasks() {
+        return BACKGROUND_TASKS;
+    }
+
+    @Override
+    public void init() {
+        // Covers exits that bypass stop(), e.g. System.exit or a signal.
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> BACKGROUND_TASKS.shutdown(SHUTDOWN_TIMEOUT_MILLIS), "background-tasks-shutdown"));
+    }
 
     @Override
     public void start(Stage stage) {
@@ -51,6 +67,11 @@ public class BrowserApplication extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        BACKGROUND_TASKS.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
     private void showErrorDialog(String message, Exception e) {
         Alert alert = new Alert(AlertType.ERROR);
         alert.setTitle("Error");
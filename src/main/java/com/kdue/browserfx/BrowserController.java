@@ -73,6 +73,9 @@ public class BrowserController {
         webEngine.locationProperty().addListener((obs, oldLoc, newLoc) -> {
             // Keep address bar as a passive display of the current URL.
             addressBar.setText(newLoc);
+            if (aiCompanionController != null && !Objects.equals(oldLoc, newLoc)) {
+                aiCompanionController.onPageChanged();
+            }
         });
 
         WebHistory history = webEngine.getHistory();
@@ -100,6 +103,9 @@ public class BrowserController {
                 addressBar.setText(webEngine.getLocation());
                 applySiteTweaks();
                 setLoadingOverlayVisible(false);
+                if (aiCompanionController != null) {
+                    aiCompanionController.onPageLoaded();
+                }
             } else if (newState == Worker.State.FAILED) {
                 statusLabel.setText("Failed to load page");
                 setLoadingOverlayVisible(false);
@@ -0,0 +1,194 @@
+package com.kdue.browserfx;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+
+/**
+ * Extracts {@code choices[0].message.content} (or {@code choices[0].delta.content} for stream
+ * chunks), the {@code usage} block and any {@code error} from a chat completion payload in a
+ * single forward pass with {@link #readCompletion}, without building a JSON tree.
+ */
+public final class ChatCompletionParser {
+
+    /** Container key of a full (non-streaming) response. */
+    public static final String MESSAGE = "message";
+    /** Container key of a server-sent event chunk. */
+    public static final String DELTA = "delta";
+
+    /**
+     * Token counts from a response's {@code usage} block. {@code cachedPromptTokens} is the part of
+     * the prompt served from the provider's prompt cache: {@code prompt_tokens_details.cached_tokens}
+     * (OpenAI, and LiteLLM's normalized form) or {@code cache_read_input_tokens} (Anthropic).
+     */
+    public record Usage(long promptTokens, long completionTokens, long cachedPromptTokens) {
+        public double cachedRatio() {
+            return promptTokens == 0 ? 0 : (double) cachedPromptTokens / promptTokens;
+        }
+    }
+
+    /**
+     * Content of the first choice, the usage block and the message of a top-level {@code error}
+     * (as sent in place of a chunk when a stream fails part way); each is null when absent.
+     */
+    public record Completion(String content, Usage usage, String error) {}
+
+    private ChatCompletionParser() {}
+
+    /** Reads the whole payload, returning the first choice's content and the usage block. */
+    public static Completion readCompletion(BufferedSource source, String containerKey) throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(source);
+        String content = null;
+        Usage usage = null;
+        String error = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "choices" -> content = readChoices(reader, containerKey);
+                case "usage" -> usage = readUsage(reader);
+                case "error" -> error = readError(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Completion(content, usage, error);
+    }
+
+    public static Completion readCompletion(String json, String containerKey) throws IOException {
+        return readCompletion(new Buffer().writeUtf8(json), containerKey);
+    }
+
+    /** Reads the whole {@code choices} array; only the first choice's content is kept. */
+    private static String readChoices(JsonStreamReader reader, String containerKey) throws IOException {
+        if (reader.nextNullIfPresent()) {
+            return null;
+        }
+        String content = null;
+        boolean first = true;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (!first || reader.peek() != '{') {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals(containerKey)) {
+                    reader.skipValue();
+                    continue;
+                }
+                if (reader.nextNullIfPresent()) {
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("content")) {
+                        content = readContentValue(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return content;
+    }
+
+    private static Usage readUsage(JsonStreamReader reader) throws IOException {
+        if (reader.nextNullIfPresent()) {
+            return null;
+        }
+        long prompt = 0;
+        long completion = 0;
+        long cached = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "prompt_tokens" -> prompt = readCount(reader);
+                case "completion_tokens" -> completion = readCount(reader);
+                case "cache_read_input_tokens" -> cached = Math.max(cached, readCount(reader));
+                case "prompt_tokens_details" -> {
+                    if (reader.nextNullIfPresent()) {
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("cached_tokens")) {
+                            cached = Math.max(cached, readCount(reader));
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Usage(prompt, completion, cached);
+    }
+
+    /** Message of an {@code error} value: a string, or an object's {@code message}; null for {@code null}. */
+    private static String readError(JsonStreamReader reader) throws IOException {
+        if (reader.nextNullIfPresent()) {
+            return null;
+        }
+        if (reader.peek() == '"') {
+            return reader.nextString();
+        }
+        if (reader.peek() != '{') {
+            reader.skipValue();
+            return "Unknown error";
+        }
+        String message = "Unknown error";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("message") && reader.peek() == '"') {
+                message = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private static long readCount(JsonStreamReader reader) throws IOException {
+        return reader.nextNullIfPresent() ? 0 : reader.nextLong();
+    }
+
+    private static String readContentValue(JsonStreamReader reader) throws IOException {
+        int next = reader.peek();
+        if (next == '"') {
+            return reader.nextString();
+        }
+        if (next != '[') {
+            reader.skipValue();
+            return null;
+        }
+        // Content parts, e.g. [{"type":"text","text":"...actual response..."}]
+        StringBuilder sb = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != '{') {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("text") && reader.peek() == '"') {
+                    sb.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return sb.isEmpty() ? null : sb.toString();
+    }
+}
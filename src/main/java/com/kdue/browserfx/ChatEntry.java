@@ -1,12 +1,13 @@
 package com.kdue.browserfx;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A single entry in the AI Companion chat: either a text message,
- * a set of product cards, or a group of suggestion buttons.
+ * a set of product cards, a group of suggestion buttons, or an answer that is still streaming in.
  */
-public sealed interface ChatEntry permits ChatEntry.TextMessage, ChatEntry.ProductCards, ChatEntry.SuggestionButtons {
+public sealed interface ChatEntry permits ChatEntry.TextMessage, ChatEntry.ProductCards, ChatEntry.SuggestionButtons, ChatEntry.StreamingMessage {
 
     String getDisplayText();
 
@@ -33,4 +34,45 @@ public sealed interface ChatEntry permits ChatEntry.TextMessage, ChatEntry.Produ
             return "";
         }
     }
+
+    /**
+     * An assistant answer that is still arriving token by token. The chat cell registers a
+     * listener that receives each delta and patches the existing bubble in place; when the stream
+     * completes the entry is replaced by a {@link TextMessage} for full markdown rendering.
+     * Mutated on the FX thread only.
+     */
+    final class StreamingMessage implements ChatEntry {
+        private final String sender;
+        private final StringBuilder text = new StringBuilder();
+        private Consumer<String> onAppend;
+
+        public StreamingMessage(String sender) {
+            this.sender = sender;
+        }
+
+        public String sender() {
+            return sender;
+        }
+
+        public String text() {
+            return text.toString();
+        }
+
+        /** Sets the listener that receives every delta appended from now on. */
+        public void setOnAppend(Consumer<String> onAppend) {
+            this.onAppend = onAppend;
+        }
+
+        public void append(String delta) {
+            text.append(delta);
+            if (onAppend != null) {
+                onAppend.accept(delta);
+            }
+        }
+
+        @Override
+        public String getDisplayText() {
+            return sender + text;
+        }
+    }
 }
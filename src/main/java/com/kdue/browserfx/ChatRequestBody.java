@@ -0,0 +1,107 @@
+package com.kdue.browserfx;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Chat completion request body that serializes itself straight into the OkHttp sink.
+ * Strings are escaped in a single pass while writing, so large page content is never copied
+ * into intermediate escaped strings or a formatted JSON document.
+ */
+public final class ChatRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** One entry of the {@code messages} array, e.g. role {@code "system"} or {@code "user"}. */
+    public record Message(String role, String content) {}
+
+    private final String model;
+    private final List<Message> messages;
+    private final double temperature;
+    private final boolean stream;
+    private final boolean streamUsage;
+
+    public ChatRequestBody(String model, List<Message> messages, double temperature, boolean stream) {
+        this(model, messages, temperature, stream, false);
+    }
+
+    /**
+     * @param streamUsage when streaming, ask for a final chunk carrying the token usage
+     *                    ({@code "stream_options":{"include_usage":true}})
+     */
+    public ChatRequestBody(String model, List<Message> messages, double temperature, boolean stream, boolean streamUsage) {
+        this.model = model;
+        this.messages = List.copyOf(messages);
+        this.temperature = temperature;
+        this.stream = stream;
+        this.streamUsage = streamUsage;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.writeUtf8("{\"model\":");
+        writeString(sink, model);
+        sink.writeUtf8(",\"messages\":[");
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            sink.writeUtf8(i == 0 ? "{\"role\":" : ",{\"role\":");
+            writeString(sink, message.role());
+            sink.writeUtf8(",\"content\":");
+            writeString(sink, message.content());
+            sink.writeByte('}');
+        }
+        sink.writeUtf8("],\"temperature\":").writeUtf8(Double.toString(temperature));
+        sink.writeUtf8(",\"stream\":").writeUtf8(Boolean.toString(stream));
+        if (stream && streamUsage) {
+            sink.writeUtf8(",\"stream_options\":{\"include_usage\":true}");
+        }
+        sink.writeByte('}');
+    }
+
+    /**
+     * Writes {@code value} as a quoted JSON string. Unescaped runs are written in bulk; quotes,
+     * backslashes and every control character below 0x20 are escaped. A null value is written
+     * as an empty string, matching what the API expects for missing content.
+     */
+    static void writeString(BufferedSink sink, String value) throws IOException {
+        sink.writeByte('"');
+        if (value != null) {
+            int runStart = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    continue;
+                }
+                if (i > runStart) {
+                    sink.writeUtf8(value, runStart, i);
+                }
+                switch (c) {
+                    case '"' -> sink.writeUtf8("\\\"");
+                    case '\\' -> sink.writeUtf8("\\\\");
+                    case '\n' -> sink.writeUtf8("\\n");
+                    case '\r' -> sink.writeUtf8("\\r");
+                    case '\t' -> sink.writeUtf8("\\t");
+                    case '\b' -> sink.writeUtf8("\\b");
+                    case '\f' -> sink.writeUtf8("\\f");
+                    default -> sink.writeUtf8("\\u00").writeByte(HEX[c >> 4]).writeByte(HEX[c & 0xF]);
+                }
+                runStart = i + 1;
+            }
+            if (runStart < length) {
+                sink.writeUtf8(value, runStart, length);
+            }
+        }
+        sink.writeByte('"');
+    }
+}
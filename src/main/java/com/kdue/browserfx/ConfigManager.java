@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
@@ -131,6 +132,121 @@ public class ConfigManager {
         return properties.getProperty("litellm.api_key", "");
     }
 
+    /** Whether chat completions are requested as server-sent event streams (default true). */
+    public boolean isStreamingEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("litellm.stream", "true"));
+    }
+
+    /** Whether streamed requests ask for a final usage chunk via {@code stream_options} (default true). */
+    public boolean isStreamUsageEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("litellm.stream_usage", "true"));
+    }
+
+    /** Whether AI answers are cached per (model, prompt type, page content, question). */
+    public boolean isResponseCacheEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("ai.cache.enabled", "true"));
+    }
+
+    public int getResponseCacheMaxEntries() {
+        return getInt("ai.cache.max_entries", 200);
+    }
+
+    /** Upper bound on the total length (in characters) of all answers kept in memory. */
+    public int getResponseCacheMaxChars() {
+        return getInt("ai.cache.max_chars", 2_000_000);
+    }
+
+    public int getResponseCacheTtlMinutes() {
+        return getInt("ai.cache.ttl_minutes", 60);
+    }
+
+    /** Whether cached answers are also persisted under ~/.browserfx/ai-cache (default false). */
+    public boolean isResponseCacheDiskEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("ai.cache.disk", "false"));
+    }
+
+    /** Token budget for page context (body, links, products) sent with each prompt. */
+    public int getContextMaxTokens() {
+        return getInt("ai.context.max_tokens", 6000);
+    }
+
+    /** Token budget for earlier turns of a page conversation before they are folded into a summary. */
+    public int getHistoryMaxTokens() {
+        return getInt("ai.history.max_tokens", 1500);
+    }
+
+    /** Maximum idle connections kept in the shared HTTP connection pool. */
+    public int getHttpPoolMaxIdle() {
+        return getInt("http.pool.max_idle", 5);
+    }
+
+    public int getHttpPoolKeepAliveSeconds() {
+        return getInt("http.pool.keep_alive_seconds", 300);
+    }
+
+    public int getHttpMaxRequests() {
+        return getInt("http.max_requests", 64);
+    }
+
+    public int getHttpMaxRequestsPerHost() {
+        return getInt("http.max_requests_per_host", 8);
+    }
+
+    /** {@code h2} (HTTP/2 with HTTP/1.1 fallback, default), {@code h2c} (cleartext HTTP/2) or {@code http1}. */
+    public String getHttpProtocol() {
+        return properties.getProperty("http.protocol", "h2");
+    }
+
+    /** Whether the AI endpoint connection is opened in the background when the panel initializes. */
+    public boolean isHttpWarmupEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("http.warmup", "true"));
+    }
+
+    /** Whether the page snapshot is taken in the background right after each page load. */
+    public boolean isPrefetchEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("ai.prefetch.enabled", "false"));
+    }
+
+    /** Whether a page summary is also requested in the background once the user stays on a page. */
+    public boolean isPrefetchSummaryEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("ai.prefetch.summary", "false"));
+    }
+
+    /** How long the user has to stay on a page before its summary is prefetched. */
+    public int getPrefetchSummaryDwellMillis() {
+        return getInt("ai.prefetch.summary_dwell_ms", 4000);
+    }
+
+    /** Whether chat answers with HTML, images or tables are rendered in a WebView instead of native nodes. */
+    public boolean isWebViewForComplexMarkdown() {
+        return Boolean.parseBoolean(properties.getProperty("ai.chat.webview_for_complex", "false"));
+    }
+
+    /** Extra virtual keyboard suggestion keywords (comma-separated {@code ai.keywords}), added to the built-in ones. */
+    public List<String> getExtraKeywords() {
+        String value = properties.getProperty("ai.keywords", "");
+        List<String> keywords = new ArrayList<>();
+        for (String keyword : value.split(",")) {
+            if (!keyword.isBlank()) {
+                keywords.add(keyword.trim());
+            }
+        }
+        return keywords;
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid integer for {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
     public void setLitellmEndpoint(String endpoint) {
         properties.setProperty("litellm.endpoint", endpoint);
     }
@@ -0,0 +1,146 @@
+package com.kdue.browserfx;
+
+import java.util.List;
+
+/**
+ * Builds the page context sent to the model within a token budget instead of a fixed character
+ * cut. Token counts are estimated per model family (Vietnamese diacritics cost far more tokens per
+ * character than plain ASCII, and tokenizers differ by vendor). The budget is shared between the
+ * body text, the product table and the link section by priority, and each section is trimmed
+ * deterministically: whole lines for products and links, a word boundary for the body.
+ */
+public final class ContextAssembler {
+
+    public static final String LINKS_HEADER = "Additional links found on page:";
+    public static final String PRODUCTS_HEADER = "Products on page (title | URL | price):";
+
+    /** Tokens kept free for the system prompt, question and the model's answer. */
+    private static final int RESERVED_TOKENS = 2500;
+
+    /** Guaranteed share of the budget per section before leftovers are redistributed. */
+    private static final double BODY_SHARE = 0.5;
+    private static final double PRODUCTS_SHARE = 0.3;
+    private static final double LINKS_SHARE = 0.2;
+
+    /**
+     * Tokenizer characteristics of a model family: context window and the average number of
+     * characters per token for ASCII and for other (e.g. accented Vietnamese) characters.
+     */
+    record ModelProfile(int contextWindow, double asciiCharsPerToken, double otherCharsPerToken) {}
+
+    private ContextAssembler() {}
+
+    /** Profile for the models in {@link ConfigManager#AVAILABLE_MODELS}; unknown models get a conservative default. */
+    static ModelProfile profileFor(String model) {
+        String m = model == null ? "" : model.toLowerCase();
+        if (m.startsWith("gpt-4o")) return new ModelProfile(128_000, 4.0, 1.6);
+        if (m.startsWith("gpt-3.5")) return new ModelProfile(16_385, 4.0, 1.1);
+        if (m.startsWith("claude-3")) return new ModelProfile(200_000, 3.5, 1.2);
+        if (m.startsWith("gemini")) return new ModelProfile(32_760, 4.0, 1.5);
+        return new ModelProfile(16_000, 3.5, 1.1);
+    }
+
+    /** Estimated token count of {@code text} for {@code model}. */
+    public static int estimateTokens(String text, String model) {
+        if (text == null || text.isEmpty()) return 0;
+        ModelProfile profile = profileFor(model);
+        return (int) Math.ceil(tokenCost(text, profile));
+    }
+
+    /**
+     * Assembles body text, link lines and the product table into one context string that fits
+     * {@code maxContextTokens} (further capped by the model's window minus a reserve).
+     * Sections are emitted in the same layout the prompts describe.
+     */
+    public static String assemble(String model, int maxContextTokens, String body, List<String> links, List<ProductInfo> products) {
+        ModelProfile profile = profileFor(model);
+        int budget = Math.max(256, Math.min(maxContextTokens, profile.contextWindow() - RESERVED_TOKENS));
+
+        String bodyText = body == null ? "" : body.trim();
+        List<String> linkLines = links == null ? List.of() : links;
+        List<String> productLines = products == null ? List.of() : products.stream().map(ContextAssembler::productLine).toList();
+
+        double bodyCost = tokenCost(bodyText, profile);
+        double productsCost = linesCost(productLines, profile);
+        double linksCost = linesCost(linkLines, profile);
+
+        // Pass 1: each section gets up to its guaranteed share.
+        double bodyAllot = Math.min(bodyCost, budget * BODY_SHARE);
+        double productsAllot = Math.min(productsCost, budget * PRODUCTS_SHARE);
+        double linksAllot = Math.min(linksCost, budget * LINKS_SHARE);
+        // Pass 2: hand what is left to sections that still need more, in priority order.
+        double left = budget - bodyAllot - productsAllot - linksAllot;
+        double extra = Math.min(left, bodyCost - bodyAllot);
+        bodyAllot += extra;
+        left -= extra;
+        extra = Math.min(left, productsCost - productsAllot);
+        productsAllot += extra;
+        left -= extra;
+        linksAllot += Math.min(left, linksCost - linksAllot);
+
+        StringBuilder sb = new StringBuilder(trimText(bodyText, bodyAllot, profile));
+        List<String> keptLinks = takeLines(linkLines, linksAllot, profile);
+        if (!keptLinks.isEmpty()) {
+            sb.append("\n\n").append(LINKS_HEADER).append('\n').append(String.join("\n", keptLinks));
+        }
+        List<String> keptProducts = takeLines(productLines, productsAllot, profile);
+        if (!keptProducts.isEmpty()) {
+            sb.append("\n\n").append(PRODUCTS_HEADER).append('\n').append(String.join("\n", keptProducts)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String productLine(ProductInfo p) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(p.title()).append(" | ").append(p.url()).append(" | ").append(p.price());
+        if (p.addToCartLabel() != null && !p.addToCartLabel().isBlank()) {
+            sb.append(" | Add to cart: ").append(p.addToCartLabel());
+        }
+        return sb.toString();
+    }
+
+    /** Longest prefix of {@code text} within {@code allot} tokens, cut at a word boundary. */
+    private static String trimText(String text, double allot, ModelProfile profile) {
+        double cost = 0;
+        for (int i = 0; i < text.length(); i++) {
+            cost += charCost(text.charAt(i), profile);
+            if (cost > allot) {
+                int cut = text.lastIndexOf(' ', i);
+                return text.substring(0, cut > 0 ? cut : i) + "...";
+            }
+        }
+        return text;
+    }
+
+    /** Leading lines that fit in {@code allot} tokens (each line also pays for its newline). */
+    private static List<String> takeLines(List<String> lines, double allot, ModelProfile profile) {
+        double cost = 0;
+        int count = 0;
+        for (String line : lines) {
+            cost += tokenCost(line, profile) + 1;
+            if (cost > allot) break;
+            count++;
+        }
+        return lines.subList(0, count);
+    }
+
+    private static double linesCost(List<String> lines, ModelProfile profile) {
+        double cost = 0;
+        for (String line : lines) {
+            cost += tokenCost(line, profile) + 1;
+        }
+        return cost;
+    }
+
+    private static double tokenCost(String text, ModelProfile profile) {
+        double cost = 0;
+        for (int i = 0; i < text.length(); i++) {
+            cost += charCost(text.charAt(i), profile);
+        }
+        return cost;
+    }
+
+    private static double charCost(char c, ModelProfile profile) {
+        return c < 0x80 ? 1 / profile.asciiCharsPerToken() : 1 / profile.otherCharsPerToken();
+    }
+}
@@ -0,0 +1,175 @@
+package com.kdue.browserfx;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conversation about one page: the page context, captured once when the conversation starts,
+ * and the turns exchanged since. Requests built from it list the context first and the history
+ * after it, so consecutive requests about the same page share their leading messages (which
+ * provider-side prompt caching can reuse), and follow-up questions keep earlier answers in view
+ * without re-attaching the page to every turn.
+ * <p>
+ * Once the history exceeds its token budget, the oldest turns are folded into a rolling summary:
+ * the question, the first sentences of the answer and the URLs it mentioned, one line per turn.
+ * The summary is extractive (no extra model call) and itself bounded to half the budget, dropping
+ * its oldest lines first. The most recent {@value #MIN_RECENT_TURNS} turns are always kept verbatim.
+ * <p>
+ * Thread-safe: turns are recorded from OkHttp callbacks while requests are built on the FX thread.
+ */
+public final class ConversationState {
+
+    /** Turns never folded into the summary, so a follow-up always sees the last answer in full. */
+    private static final int MIN_RECENT_TURNS = 2;
+    private static final int SUMMARY_QUESTION_CHARS = 200;
+    private static final int SUMMARY_ANSWER_CHARS = 300;
+    private static final int SUMMARY_MAX_URLS = 5;
+
+    static final String PAGE_CONTEXT_HEADER = "Web page content:\n";
+    static final String SUMMARY_HEADER = "Summary of the earlier conversation about this page:\n";
+
+    private static final Pattern URL = Pattern.compile("https?://[^\\s<>\"'`()\\[\\]{}|\\\\^]+");
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?](\\s|$)");
+
+    /** One exchange: the user's question or instruction (without task guidelines), and the model's raw answer. */
+    public record Turn(String userMessage, String answer) {}
+
+    private final String pageKey;
+    private final String pageContext;
+    private final int historyMaxTokens;
+    private final List<Turn> turns = new ArrayList<>();
+    private final List<String> summaryLines = new ArrayList<>();
+
+    /**
+     * @param pageKey identifies the page the conversation is about, e.g. its URL
+     * @param pageContext assembled page context, sent unchanged with every request
+     * @param historyMaxTokens estimated token budget for earlier turns and their summary
+     */
+    public ConversationState(String pageKey, String pageContext, int historyMaxTokens) {
+        this.pageKey = pageKey;
+        this.pageContext = pageContext == null ? "" : pageContext;
+        this.historyMaxTokens = historyMaxTokens;
+    }
+
+    public String pageKey() {
+        return pageKey;
+    }
+
+    public String pageContext() {
+        return pageContext;
+    }
+
+    public synchronized int turnCount() {
+        return turns.size();
+    }
+
+    public synchronized boolean hasHistory() {
+        return !turns.isEmpty() || !summaryLines.isEmpty();
+    }
+
+    /**
+     * Messages describing the conversation so far, to be sent after the system prompt and page
+     * context: the rolling summary (if any), then the kept turns as user/assistant pairs.
+     */
+    public synchronized List<ChatRequestBody.Message> history() {
+        List<ChatRequestBody.Message> messages = new ArrayList<>(turns.size() * 2 + 1);
+        if (!summaryLines.isEmpty()) {
+            messages.add(new ChatRequestBody.Message("user", SUMMARY_HEADER + String.join("\n", summaryLines)));
+        }
+        for (Turn turn : turns) {
+            messages.add(new ChatRequestBody.Message("user", turn.userMessage()));
+            messages.add(new ChatRequestBody.Message("assistant", turn.answer()));
+        }
+        return messages;
+    }
+
+    /**
+     * Digest of the history, empty while there is none. Part of the response cache key, so an
+     * answer given mid-conversation is not served for the same question on a fresh page visit.
+     */
+    public synchronized String historyDigest() {
+        if (!hasHistory()) {
+            return "";
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (ChatRequestBody.Message message : history()) {
+            digest.update(message.role().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(message.content().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Estimated tokens of {@link #history()} for {@code model}. */
+    public synchronized int historyTokens(String model) {
+        int tokens = 0;
+        for (ChatRequestBody.Message message : history()) {
+            tokens += ContextAssembler.estimateTokens(message.content(), model);
+        }
+        return tokens;
+    }
+
+    /** Appends a completed exchange and compacts the history if it no longer fits the budget. */
+    public synchronized void addTurn(String userMessage, String answer, String model) {
+        if (answer == null || answer.isBlank()) {
+            return;
+        }
+        turns.add(new Turn(userMessage, answer));
+        while (turns.size() > MIN_RECENT_TURNS && historyTokens(model) > historyMaxTokens) {
+            summaryLines.add(summarize(turns.remove(0)));
+        }
+        int summaryBudget = historyMaxTokens / 2;
+        while (summaryLines.size() > 1
+                && ContextAssembler.estimateTokens(String.join("\n", summaryLines), model) > summaryBudget) {
+            summaryLines.remove(0);
+        }
+    }
+
+    /** One summary line: the question, the start of the answer and the URLs the answer gave. */
+    static String summarize(Turn turn) {
+        StringBuilder line = new StringBuilder("- User: ")
+                .append(clip(turn.userMessage(), SUMMARY_QUESTION_CHARS))
+                .append(" | Assistant: ")
+                .append(clip(leadingSentences(turn.answer()), SUMMARY_ANSWER_CHARS));
+        List<String> urls = new ArrayList<>();
+        Matcher matcher = URL.matcher(turn.answer());
+        while (matcher.find() && urls.size() < SUMMARY_MAX_URLS) {
+            String url = matcher.group().replaceAll("[.,;:!?*_~]+$", "");
+            if (!urls.contains(url)) {
+                urls.add(url);
+            }
+        }
+        if (!urls.isEmpty()) {
+            line.append(" | Links: ").append(String.join(" ", urls));
+        }
+        return line.toString();
+    }
+
+    /** The answer up to the end of its second sentence, whitespace collapsed. */
+    private static String leadingSentences(String text) {
+        String flat = text.replaceAll("\\s+", " ").trim();
+        Matcher matcher = SENTENCE_END.matcher(flat);
+        int end = -1;
+        for (int i = 0; i < 2 && matcher.find(); i++) {
+            end = matcher.start() + 1;
+        }
+        return end > 0 ? flat.substring(0, end) : flat;
+    }
+
+    private static String clip(String text, int maxChars) {
+        String flat = text == null ? "" : text.replaceAll("\\s+", " ").trim();
+        return flat.length() <= maxChars ? flat : flat.substring(0, maxChars - 1) + "…";
+    }
+}
@@ -0,0 +1,145 @@
+package com.kdue.browserfx;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the single {@link OkHttpClient} used by the application, so every caller shares one
+ * connection pool and dispatcher. Pool size, keep-alive, concurrency limits and protocol
+ * preference come from {@link ConfigManager}; connection reuse is tracked by {@link ConnectionMetrics}.
+ */
+public final class HttpClients {
+
+    private static final ConnectionMetrics METRICS = new ConnectionMetrics();
+    private static OkHttpClient shared;
+
+    private HttpClients() {}
+
+    /** Returns the shared client, building it from {@code configManager} on first use. */
+    public static synchronized OkHttpClient shared(ConfigManager configManager) {
+        if (shared == null) {
+            shared = build(configManager);
+        }
+        return shared;
+    }
+
+    public static ConnectionMetrics metrics() {
+        return METRICS;
+    }
+
+    private static OkHttpClient build(ConfigManager configManager) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(configManager.getHttpMaxRequests());
+        dispatcher.setMaxRequestsPerHost(configManager.getHttpMaxRequestsPerHost());
+
+        return new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(
+                        configManager.getHttpPoolMaxIdle(),
+                        configManager.getHttpPoolKeepAliveSeconds(),
+                        TimeUnit.SECONDS))
+                .protocols(protocols(configManager.getHttpProtocol()))
+                .eventListener(METRICS)
+                .build();
+    }
+
+    /**
+     * Maps the {@code http.protocol} setting to OkHttp protocols: {@code h2} negotiates HTTP/2 via
+     * ALPN with HTTP/1.1 fallback, {@code h2c} speaks cleartext HTTP/2 directly (local proxies),
+     * {@code http1} forces HTTP/1.1.
+     */
+    static List<Protocol> protocols(String setting) {
+        return switch (setting == null ? "" : setting.trim().toLowerCase()) {
+            case "h2c" -> List.of(Protocol.H2_PRIOR_KNOWLEDGE);
+            case "http1", "http/1.1" -> List.of(Protocol.HTTP_1_1);
+            default -> List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        };
+    }
+
+    /**
+     * Counts calls, pooled connection acquisitions and fresh connects/TLS handshakes across all
+     * requests. Every acquisition that did not need a new connect reused a pooled connection.
+     */
+    public static final class ConnectionMetrics extends EventListener {
+
+        /** Point-in-time copy of the counters. */
+        public record Stats(long calls, long connectionsAcquired, long newConnections, long tlsHandshakes, long connectMillis) {
+            public long reusedConnections() {
+                return Math.max(0, connectionsAcquired - newConnections);
+            }
+
+            public double reuseRate() {
+                return connectionsAcquired == 0 ? 0 : (double) reusedConnections() / connectionsAcquired;
+            }
+        }
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong connects = new AtomicLong();
+        private final AtomicLong handshakes = new AtomicLong();
+        private final AtomicLong connectNanos = new AtomicLong();
+        /** Start time of the connect in progress on the current thread (connects are blocking). */
+        private final ThreadLocal<Long> connectStart = new ThreadLocal<>();
+
+        private ConnectionMetrics() {}
+
+        public Stats stats() {
+            return new Stats(calls.get(), acquired.get(), connects.get(), handshakes.get(),
+                    TimeUnit.NANOSECONDS.toMillis(connectNanos.get()));
+        }
+
+        @Override
+        public void callStart(Call call) {
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connects.incrementAndGet();
+            connectStart.set(System.nanoTime());
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            handshakes.incrementAndGet();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            recordConnectTime();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+            recordConnectTime();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            acquired.incrementAndGet();
+        }
+
+        private void recordConnectTime() {
+            Long start = connectStart.get();
+            if (start != null) {
+                connectNanos.addAndGet(System.nanoTime() - start);
+                connectStart.remove();
+            }
+        }
+    }
+}
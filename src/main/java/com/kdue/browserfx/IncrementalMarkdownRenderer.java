@@ -0,0 +1,85 @@
+package com.kdue.browserfx;
+
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Renders markdown that arrives in pieces (a streamed answer) into one {@link VBox} that is patched
+ * in place. Blocks that can no longer change, i.e. everything before the last blank line outside a
+ * code fence, are rendered once and kept; only the trailing open block (paragraph, list, code
+ * fence in progress) is re-parsed on each {@link #append}. The cost of a delta therefore depends
+ * on the size of the open block, not on the length of the answer so far.
+ * <p>
+ * Splitting at blank lines can render a loose list as consecutive lists while streaming; the
+ * final message is rendered from the full text anyway. FX thread only.
+ */
+public final class IncrementalMarkdownRenderer {
+
+    private final VBox view = new VBox(6);
+    private final Consumer<String> onLinkClicked;
+    /** Text of the open block(s) that may still change. */
+    private final StringBuilder open = new StringBuilder();
+    /** Start of the first line in {@link #open} not yet scanned for block boundaries. */
+    private int lineStart;
+    private boolean inFence;
+    private boolean openHasContent;
+    /** Number of children of {@link #view} that belong to finished blocks. */
+    private int finishedNodes;
+
+    public IncrementalMarkdownRenderer(Consumer<String> onLinkClicked) {
+        this.onLinkClicked = onLinkClicked;
+    }
+
+    public VBox view() {
+        return view;
+    }
+
+    public void append(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        open.append(delta);
+        int newline;
+        while ((newline = open.indexOf("\n", lineStart)) >= 0) {
+            String line = open.substring(lineStart, newline).strip();
+            lineStart = newline + 1;
+            if (line.startsWith("```") || line.startsWith("~~~")) {
+                inFence = !inFence;
+                openHasContent = true;
+            } else if (!line.isEmpty()) {
+                openHasContent = true;
+            } else if (!inFence && openHasContent) {
+                finishBlocks(lineStart);
+            }
+        }
+        removeOpenNodes();
+        if (openHasContent || lineStart < open.length()) {
+            addRendered(open.toString());
+        }
+    }
+
+    /** Renders {@code open[0, end)} as finished blocks and keeps only the rest open. */
+    private void finishBlocks(int end) {
+        String finished = open.substring(0, end);
+        open.delete(0, end);
+        lineStart = 0;
+        openHasContent = false;
+        removeOpenNodes();
+        addRendered(finished);
+        finishedNodes = view.getChildren().size();
+    }
+
+    private void removeOpenNodes() {
+        int size = view.getChildren().size();
+        if (size > finishedNodes) {
+            view.getChildren().remove(finishedNodes, size);
+        }
+    }
+
+    private void addRendered(String markdown) {
+        VBox rendered = MarkdownNodeRenderer.render(markdown, onLinkClicked);
+        view.getChildren().addAll(new ArrayList<>(rendered.getChildren()));
+    }
+}
@@ -0,0 +1,202 @@
+package com.kdue.browserfx;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Minimal pull-style JSON tokenizer that reads directly from an Okio {@link BufferedSource}.
+ * Only the operations needed to walk chat completion payloads are provided; values that are not
+ * of interest are skipped without being materialized. Separators are handled leniently
+ * (a missing comma is not an error) since the input always comes from a trusted API response.
+ */
+public final class JsonStreamReader {
+
+    private static final ByteString STRING_TERMINALS = ByteString.encodeUtf8("\"\\");
+    private static final ByteString LITERAL_TERMINALS = ByteString.encodeUtf8(",}] \t\r\n");
+
+    private final BufferedSource source;
+
+    public JsonStreamReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    /** Returns the next significant character without consuming it, or -1 at end of input. */
+    public int peek() throws IOException {
+        while (source.request(1)) {
+            byte b = source.getBuffer().getByte(0);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                source.skip(1);
+                continue;
+            }
+            return b;
+        }
+        return -1;
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+    }
+
+    /** True if the current object or array has another member; consumes a leading comma. */
+    public boolean hasNext() throws IOException {
+        int c = peek();
+        if (c == ',') {
+            source.skip(1);
+            c = peek();
+        }
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /** Reads an object member name and the following colon. */
+    public String nextName() throws IOException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /** Reads a string value, decoding all JSON escapes including {@code \\uXXXX} (and surrogate pairs). */
+    public String nextString() throws IOException {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            long index = source.indexOfElement(STRING_TERMINALS);
+            if (index == -1) {
+                throw new EOFException("Unterminated JSON string");
+            }
+            if (index > 0) {
+                sb.append(source.readUtf8(index));
+            }
+            if (source.readByte() == '"') {
+                return sb.toString();
+            }
+            readEscape(sb);
+        }
+    }
+
+    /** Reads a numeric value; fractional numbers are truncated. */
+    public long nextLong() throws IOException {
+        peek();
+        long index = source.indexOfElement(LITERAL_TERMINALS);
+        String literal = index == -1 ? source.readUtf8() : source.readUtf8(index);
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(literal);
+            } catch (NumberFormatException e2) {
+                throw new IOException("Expected a number but found '" + literal + "'");
+            }
+        }
+    }
+
+    /** Consumes a {@code null} literal if it is next; returns whether it did. */
+    public boolean nextNullIfPresent() throws IOException {
+        if (peek() != 'n') {
+            return false;
+        }
+        skipLiteral();
+        return true;
+    }
+
+    /** Skips the next value of any type (including nested objects and arrays). */
+    public void skipValue() throws IOException {
+        int c = peek();
+        switch (c) {
+            case '"' -> skipString();
+            case '{' -> {
+                beginObject();
+                while (hasNext()) {
+                    skipString();
+                    expect(':');
+                    skipValue();
+                }
+                endObject();
+            }
+            case '[' -> {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            }
+            case -1 -> throw new EOFException("Unexpected end of JSON");
+            default -> skipLiteral();
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            long index = source.indexOfElement(STRING_TERMINALS);
+            if (index == -1) {
+                throw new EOFException("Unterminated JSON string");
+            }
+            source.skip(index);
+            if (source.readByte() == '"') {
+                return;
+            }
+            source.skip(source.readByte() == 'u' ? 4 : 0);
+        }
+    }
+
+    /** Skips a number, boolean or null literal. */
+    private void skipLiteral() throws IOException {
+        long index = source.indexOfElement(LITERAL_TERMINALS);
+        if (index == -1) {
+            // Literal runs to end of input.
+            while (source.request(1)) {
+                source.skip(source.getBuffer().size());
+            }
+            return;
+        }
+        source.skip(index);
+    }
+
+    private void readEscape(StringBuilder sb) throws IOException {
+        byte escaped = source.readByte();
+        switch (escaped) {
+            case '"' -> sb.append('"');
+            case '\\' -> sb.append('\\');
+            case '/' -> sb.append('/');
+            case 'b' -> sb.append('\b');
+            case 'f' -> sb.append('\f');
+            case 'n' -> sb.append('\n');
+            case 'r' -> sb.append('\r');
+            case 't' -> sb.append('\t');
+            // A surrogate pair arrives as two consecutive \\u escapes; appending both halves
+            // as chars reassembles the code point.
+            case 'u' -> {
+                String hex = source.readUtf8(4);
+                try {
+                    sb.append((char) Integer.parseInt(hex, 16));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid unicode escape: \\u" + hex, e);
+                }
+            }
+            default -> sb.append('\\').append((char) escaped);
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        int next = peek();
+        if (next != c) {
+            throw new IOException("Expected '" + c + "' but found " + (next == -1 ? "end of input" : "'" + (char) next + "'"));
+        }
+        source.skip(1);
+    }
+}
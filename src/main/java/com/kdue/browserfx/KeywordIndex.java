@@ -0,0 +1,116 @@
+package com.kdue.browserfx;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Prefix index for keyword suggestions. Keywords are normalized once (lower case, Vietnamese
+ * diacritics stripped, so "tom" finds "tóm tắt") and kept in a sorted array; a lookup is a binary
+ * search for the prefix range plus a scan of that range, which stays fast with thousands of
+ * entries. Matches are ranked by how often the user picked them this session, then by the order
+ * the keywords were given in. Usage counts are updated on the FX thread.
+ */
+public final class KeywordIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private record Entry(String key, String keyword, int order) {}
+
+    private final Entry[] entries;
+    private final Map<String, Integer> usage = new HashMap<>();
+
+    /** Builds the index; later duplicates (by normalized form) of a keyword are ignored. */
+    public KeywordIndex(Collection<String> keywords) {
+        Map<String, Entry> unique = new LinkedHashMap<>();
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isBlank()) {
+                continue;
+            }
+            String trimmed = keyword.trim();
+            String key = normalize(trimmed);
+            unique.putIfAbsent(key, new Entry(key, trimmed, unique.size()));
+        }
+        entries = unique.values().toArray(new Entry[0]);
+        Arrays.sort(entries, Comparator.comparing(Entry::key));
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns up to {@code limit} keywords starting with {@code prefix} (after normalization),
+     * excluding a keyword equal to the prefix itself, best ranked first.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<Entry> best = new ArrayList<>(limit + 1);
+        for (int i = lowerBound(key); i < entries.length && entries[i].key().startsWith(key); i++) {
+            Entry entry = entries[i];
+            if (entry.key().equals(key)) {
+                continue;
+            }
+            int position = best.size();
+            while (position > 0 && ranksBefore(entry, best.get(position - 1))) {
+                position--;
+            }
+            if (position < limit) {
+                best.add(position, entry);
+                if (best.size() > limit) {
+                    best.remove(limit);
+                }
+            }
+        }
+        List<String> out = new ArrayList<>(best.size());
+        for (Entry entry : best) {
+            out.add(entry.keyword());
+        }
+        return out;
+    }
+
+    /** Records that the user picked {@code keyword}, so it ranks higher for the rest of the session. */
+    public void recordUse(String keyword) {
+        usage.merge(normalize(keyword), 1, Integer::sum);
+    }
+
+    /** Lower-cases and strips diacritics (including đ) for matching. */
+    public static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(s.trim(), Normalizer.Form.NFD)).replaceAll("");
+        return stripped.toLowerCase(Locale.ROOT).replace('đ', 'd');
+    }
+
+    private boolean ranksBefore(Entry a, Entry b) {
+        int usageA = usage.getOrDefault(a.key(), 0);
+        int usageB = usage.getOrDefault(b.key(), 0);
+        return usageA != usageB ? usageA > usageB : a.order() < b.order();
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].key().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,286 @@
+package com.kdue.browserfx;
+
+import javafx.geometry.Insets;
+import javafx.scene.Cursor;
+import javafx.scene.control.Separator;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import org.commonmark.node.AbstractVisitor;
+import org.commonmark.node.BlockQuote;
+import org.commonmark.node.BulletList;
+import org.commonmark.node.Code;
+import org.commonmark.node.Emphasis;
+import org.commonmark.node.FencedCodeBlock;
+import org.commonmark.node.HardLineBreak;
+import org.commonmark.node.Heading;
+import org.commonmark.node.HtmlBlock;
+import org.commonmark.node.HtmlInline;
+import org.commonmark.node.Image;
+import org.commonmark.node.IndentedCodeBlock;
+import org.commonmark.node.Link;
+import org.commonmark.node.ListBlock;
+import org.commonmark.node.Node;
+import org.commonmark.node.OrderedList;
+import org.commonmark.node.Paragraph;
+import org.commonmark.node.SoftLineBreak;
+import org.commonmark.node.StrongEmphasis;
+import org.commonmark.node.ThematicBreak;
+import org.commonmark.parser.Parser;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Renders markdown directly into JavaFX nodes (a {@link VBox} of {@link TextFlow} blocks) for chat
+ * bubbles, so an answer costs a few dozen text nodes instead of a WebKit page. Covers what AI
+ * answers use: paragraphs, headings, lists, block quotes, code, links and emphasis; images are
+ * drawn by a caller-supplied factory, such as cached thumbnails. Content that is better shown by a
+ * browser (raw HTML, images, pipe tables) is reported by {@link #needsWebView}.
+ * Nodes must be created on the FX thread.
+ */
+public final class MarkdownNodeRenderer {
+
+    private static final Parser PARSER = Parser.builder().build();
+
+    private static final String FONT_FAMILY = "System";
+    private static final String MONO_FONT_FAMILY = "Monospaced";
+    private static final double BASE_FONT_SIZE = 12;
+    private static final Color TEXT_COLOR = Color.web("#2d3748");
+    private static final Color HEADING_COLOR = Color.web("#1a202c");
+    private static final Color LINK_COLOR = Color.web("#4299e1");
+    private static final Color CODE_COLOR = Color.web("#b83280");
+    private static final Color CODE_BLOCK_COLOR = Color.web("#e2e8f0");
+
+    /** Delimiter row of a GFM pipe table, which plain commonmark renders as a paragraph. */
+    private static final Pattern TABLE_DELIMITER_ROW =
+            Pattern.compile("(?m)^\\s*\\|?\\s*:?-{3,}:?\\s*(\\|\\s*:?-{3,}:?\\s*)+\\|?\\s*$");
+
+    private record InlineStyle(boolean bold, boolean italic, double size, Color color) {
+        static final InlineStyle REGULAR = new InlineStyle(false, false, BASE_FONT_SIZE, TEXT_COLOR);
+
+        InlineStyle withBold() {
+            return new InlineStyle(true, italic, size, color);
+        }
+
+        InlineStyle withItalic() {
+            return new InlineStyle(bold, true, size, color);
+        }
+
+        Font font() {
+            return Font.font(FONT_FAMILY, bold ? FontWeight.BOLD : FontWeight.NORMAL,
+                    italic ? FontPosture.ITALIC : FontPosture.REGULAR, size);
+        }
+    }
+
+    private MarkdownNodeRenderer() {}
+
+    public static Node parse(String markdown) {
+        return PARSER.parse(markdown == null ? "" : markdown);
+    }
+
+    /** Whether {@code markdown} (parsed as {@code document}) has content the native renderer cannot show faithfully. */
+    public static boolean needsWebView(String markdown, Node document) {
+        if (markdown != null && TABLE_DELIMITER_ROW.matcher(markdown).find()) {
+            return true;
+        }
+        boolean[] found = {false};
+        document.accept(new AbstractVisitor() {
+            @Override
+            public void visit(HtmlBlock htmlBlock) {
+                found[0] = true;
+            }
+
+            @Override
+            public void visit(HtmlInline htmlInline) {
+                found[0] = true;
+            }
+
+            @Override
+            public void visit(Image image) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    public static VBox render(String markdown, Consumer<String> onLinkClicked) {
+        return render(parse(markdown), onLinkClicked);
+    }
+
+    /** Renders a parsed document; clicking a link passes its destination to {@code onLinkClicked}. */
+    public static VBox render(Node document, Consumer<String> onLinkClicked) {
+        return render(document, onLinkClicked, null);
+    }
+
+    /**
+     * Same as {@link #render(Node, Consumer)} but shows each image as the node {@code images}
+     * creates for its URL, e.g. a cached thumbnail. Without it, an image is rendered as a link
+     * labelled with its alt text.
+     */
+    public static VBox render(Node document, Consumer<String> onLinkClicked,
+                              Function<String, javafx.scene.Node> images) {
+        VBox container = new VBox(6);
+        renderBlocks(document, container, onLinkClicked, images);
+        return container;
+    }
+
+    private static void renderBlocks(Node parent, Pane container, Consumer<String> onLinkClicked,
+                                     Function<String, javafx.scene.Node> images) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNext()) {
+            javafx.scene.Node block = renderBlock(node, onLinkClicked, images);
+            if (block != null) {
+                container.getChildren().add(block);
+            }
+        }
+    }
+
+    private static javafx.scene.Node renderBlock(Node node, Consumer<String> onLinkClicked,
+                                                 Function<String, javafx.scene.Node> images) {
+        if (node instanceof Paragraph) {
+            return inlineFlow(node, InlineStyle.REGULAR, onLinkClicked, images);
+        }
+        if (node instanceof Heading heading) {
+            double size = switch (heading.getLevel()) {
+                case 1 -> BASE_FONT_SIZE + 3;
+                case 2 -> BASE_FONT_SIZE + 2;
+                default -> BASE_FONT_SIZE + 1;
+            };
+            return inlineFlow(node, new InlineStyle(true, false, size, HEADING_COLOR), onLinkClicked, images);
+        }
+        if (node instanceof ListBlock list) {
+            return renderList(list, onLinkClicked, images);
+        }
+        if (node instanceof BlockQuote) {
+            VBox quote = new VBox(4);
+            quote.setStyle("-fx-border-color: transparent transparent transparent #cbd5e0; -fx-border-width: 0 0 0 3; -fx-padding: 0 0 0 8;");
+            renderBlocks(node, quote, onLinkClicked, images);
+            return quote;
+        }
+        if (node instanceof FencedCodeBlock code) {
+            return codeBlock(code.getLiteral());
+        }
+        if (node instanceof IndentedCodeBlock code) {
+            return codeBlock(code.getLiteral());
+        }
+        if (node instanceof HtmlBlock html) {
+            return new TextFlow(text(html.getLiteral().strip(), InlineStyle.REGULAR));
+        }
+        if (node instanceof ThematicBreak) {
+            return new Separator();
+        }
+        VBox box = new VBox(6);
+        renderBlocks(node, box, onLinkClicked, images);
+        return box.getChildren().isEmpty() ? null : box;
+    }
+
+    private static VBox renderList(ListBlock list, Consumer<String> onLinkClicked,
+                                   Function<String, javafx.scene.Node> images) {
+        VBox items = new VBox(list.isTight() ? 2 : 6);
+        int number = 1;
+        String delimiter = ".";
+        if (list instanceof OrderedList ordered) {
+            if (ordered.getMarkerStartNumber() != null) {
+                number = ordered.getMarkerStartNumber();
+            }
+            if (ordered.getMarkerDelimiter() != null) {
+                delimiter = ordered.getMarkerDelimiter();
+            }
+        }
+        for (Node item = list.getFirstChild(); item != null; item = item.getNext()) {
+            String marker = list instanceof BulletList ? "•" : (number++) + delimiter;
+            Text markerText = text(marker, InlineStyle.REGULAR);
+            TextFlow markerFlow = new TextFlow(markerText);
+            markerFlow.setMinWidth(18);
+            markerFlow.setPrefWidth(18);
+            VBox content = new VBox(4);
+            renderBlocks(item, content, onLinkClicked, images);
+            HBox.setHgrow(content, Priority.ALWAYS);
+            items.getChildren().add(new HBox(2, markerFlow, content));
+        }
+        return items;
+    }
+
+    private static VBox codeBlock(String literal) {
+        String code = literal.endsWith("\n") ? literal.substring(0, literal.length() - 1) : literal;
+        Text text = new Text(code);
+        text.setFont(Font.font(MONO_FONT_FAMILY, BASE_FONT_SIZE - 1));
+        text.setFill(CODE_BLOCK_COLOR);
+        VBox box = new VBox(new TextFlow(text));
+        box.setPadding(new Insets(8));
+        box.setStyle("-fx-background-color: #2d3748; -fx-background-radius: 6;");
+        return box;
+    }
+
+    private static TextFlow inlineFlow(Node block, InlineStyle style, Consumer<String> onLinkClicked,
+                                       Function<String, javafx.scene.Node> images) {
+        TextFlow flow = new TextFlow();
+        renderInlines(block, style, null, flow, onLinkClicked, images);
+        return flow;
+    }
+
+    /** Appends text nodes for the inline children of {@code parent}; {@code link} is set inside a link. */
+    private static void renderInlines(Node parent, InlineStyle style, String link, TextFlow flow,
+                                      Consumer<String> onLinkClicked, Function<String, javafx.scene.Node> images) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNext()) {
+            if (node instanceof org.commonmark.node.Text literal) {
+                flow.getChildren().add(linkAware(text(literal.getLiteral(), style), link, onLinkClicked));
+            } else if (node instanceof StrongEmphasis) {
+                renderInlines(node, style.withBold(), link, flow, onLinkClicked, images);
+            } else if (node instanceof Emphasis) {
+                renderInlines(node, style.withItalic(), link, flow, onLinkClicked, images);
+            } else if (node instanceof Code code) {
+                Text text = new Text(code.getLiteral());
+                text.setFont(Font.font(MONO_FONT_FAMILY, style.size() - 1));
+                text.setFill(CODE_COLOR);
+                flow.getChildren().add(linkAware(text, link, onLinkClicked));
+            } else if (node instanceof Link target) {
+                int before = flow.getChildren().size();
+                renderInlines(node, style, target.getDestination(), flow, onLinkClicked, images);
+                if (flow.getChildren().size() == before) {
+                    flow.getChildren().add(linkAware(text(target.getDestination(), style), target.getDestination(), onLinkClicked));
+                }
+            } else if (node instanceof Image image && images != null) {
+                flow.getChildren().add(images.apply(image.getDestination()));
+            } else if (node instanceof Image image) {
+                int before = flow.getChildren().size();
+                renderInlines(node, style, image.getDestination(), flow, onLinkClicked, images);
+                if (flow.getChildren().size() == before) {
+                    flow.getChildren().add(linkAware(text("[image]", style), image.getDestination(), onLinkClicked));
+                }
+            } else if (node instanceof SoftLineBreak) {
+                flow.getChildren().add(text(" ", style));
+            } else if (node instanceof HardLineBreak) {
+                flow.getChildren().add(text("\n", style));
+            } else if (node instanceof HtmlInline html) {
+                flow.getChildren().add(text(html.getLiteral(), style));
+            } else {
+                renderInlines(node, style, link, flow, onLinkClicked, images);
+            }
+        }
+    }
+
+    private static Text text(String value, InlineStyle style) {
+        Text text = new Text(value);
+        text.setFont(style.font());
+        text.setFill(style.color());
+        return text;
+    }
+
+    private static Text linkAware(Text text, String link, Consumer<String> onLinkClicked) {
+        if (link != null) {
+            text.setFill(LINK_COLOR);
+            text.setCursor(Cursor.HAND);
+            text.setOnMouseClicked(e -> onLinkClicked.accept(link));
+        }
+        return text;
+    }
+}
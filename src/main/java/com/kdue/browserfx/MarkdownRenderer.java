@@ -4,15 +4,42 @@ import org.commonmark.node.Node;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.HtmlRenderer;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Converts markdown to a full HTML document with embedded CSS for use in WebView.
  * No external resources are loaded; safe for loadContent(html, "text/html").
+ * <p>
+ * Rendered documents are memoized in a small LRU keyed by markdown and extra stylesheet, so
+ * re-showing the same content (cell recycling, link-click reloads, font changes back and forth)
+ * skips parsing and rendering. The document head for each stylesheet variant is built once.
  */
 public final class MarkdownRenderer {
 
     private static final Parser PARSER = Parser.builder().build();
     private static final HtmlRenderer RENDERER = HtmlRenderer.builder().build();
 
+    private static final int MAX_CACHED_DOCUMENTS = 64;
+    private static final int MAX_CACHED_PREFIXES = 16;
+    private static final String DOCUMENT_SUFFIX = "</body></html>";
+
+    public record CacheStats(long hits, long misses, int entries) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record DocumentKey(String extraCss, String markdown) {}
+
+    private static final Map<DocumentKey, String> DOCUMENTS = lruMap(MAX_CACHED_DOCUMENTS);
+    /** Document head up to and including {@code <body>}, per extra stylesheet ("" for none). */
+    private static final Map<String, String> PREFIXES = lruMap(MAX_CACHED_PREFIXES);
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
     private static final String CSS = """
         * { box-sizing: border-box; }
         body {
@@ -81,12 +108,64 @@ public final class MarkdownRenderer {
      * Use for reading mode or other contexts that need custom typography (e.g. font-size, max-width).
      */
     public static String toHtmlDocument(String markdown, String extraCss) {
-        String styles = CSS + (extraCss != null && !extraCss.isBlank() ? extraCss : "");
+        String css = extraCss != null && !extraCss.isBlank() ? extraCss : "";
+        if (markdown == null || markdown.isBlank()) {
+            return prefix(css) + DOCUMENT_SUFFIX;
+        }
+        DocumentKey key = new DocumentKey(css, markdown);
+        String cached;
+        synchronized (DOCUMENTS) {
+            cached = DOCUMENTS.get(key);
+        }
+        if (cached != null) {
+            HITS.incrementAndGet();
+            return cached;
+        }
+        MISSES.incrementAndGet();
+        String html = render(markdown, css);
+        synchronized (DOCUMENTS) {
+            DOCUMENTS.put(key, html);
+        }
+        return html;
+    }
+
+    /**
+     * Same as {@link #toHtmlDocument(String, String)} but bypasses the document cache. Use for
+     * content that is only shown once, such as a partial answer while it streams, so it does not
+     * push finished documents out of the cache.
+     */
+    public static String toHtmlDocumentUncached(String markdown, String extraCss) {
+        String css = extraCss != null && !extraCss.isBlank() ? extraCss : "";
         if (markdown == null || markdown.isBlank()) {
-            return "<html><head><meta charset=\"UTF-8\"><style>" + styles + "</style></head><body></body></html>";
+            return prefix(css) + DOCUMENT_SUFFIX;
         }
+        return render(markdown, css);
+    }
+
+    public static CacheStats cacheStats() {
+        synchronized (DOCUMENTS) {
+            return new CacheStats(HITS.get(), MISSES.get(), DOCUMENTS.size());
+        }
+    }
+
+    private static String render(String markdown, String css) {
         Node document = PARSER.parse(markdown);
-        String bodyHtml = RENDERER.render(document);
-        return "<html><head><meta charset=\"UTF-8\"><style>" + styles + "</style></head><body>" + bodyHtml + "</body></html>";
+        return prefix(css) + RENDERER.render(document) + DOCUMENT_SUFFIX;
+    }
+
+    private static String prefix(String extraCss) {
+        synchronized (PREFIXES) {
+            return PREFIXES.computeIfAbsent(extraCss,
+                    css -> "<html><head><meta charset=\"UTF-8\"><style>" + CSS + css + "</style></head><body>");
+        }
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
     }
 }
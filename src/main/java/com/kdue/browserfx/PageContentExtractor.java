@@ -4,346 +4,301 @@ import javafx.scene.web.WebEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import okio.Buffer;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PageContentExtractor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PageContentExtractor.class);
-    private static final int MAX_CONTENT_LENGTH = 8000;
+    /**
+     * Hard safety cap on raw extracted text. The actual prompt size is decided later by
+     * {@link ContextAssembler} from the model's token budget.
+     */
+    private static final int MAX_CONTENT_LENGTH = 100_000;
 
     private final WebEngine webEngine;
+    private PageSnapshot cachedSnapshot;
+    /**
+     * DOM generation the cached snapshot was taken at. The page's MutationObserver bumps
+     * {@value #GENERATION_SCRIPT} on every batch of changes; a snapshot is only reused while
+     * the page still reports this value.
+     */
+    private long cachedGeneration;
+
+    private static final String GENERATION_SCRIPT = "window.__browserfxDomGeneration || 0";
 
     public PageContentExtractor(WebEngine webEngine) {
         this.webEngine = webEngine;
     }
 
-    public String extractContent() {
-        if (webEngine.getLocation() == null || webEngine.getLocation().isBlank()) {
-            return "";
+    /**
+     * Returns a snapshot of the current page. The page is read by a single combined script the
+     * first time and the result is reused while the URL and DOM generation are unchanged, so
+     * repeat questions on a static page only cost reading one counter. Must be called on the FX thread.
+     */
+    public PageSnapshot snapshot() {
+        String location = webEngine.getLocation();
+        if (location == null || location.isBlank()) {
+            return PageSnapshot.EMPTY;
+        }
+        PageSnapshot cached = cachedSnapshot;
+        if (cached != null && cached.url().equals(location) && cachedGeneration == currentGeneration()) {
+            return cached;
         }
-
-        String script = buildExtractionScript();
         try {
-            Object result = webEngine.executeScript(script);
-            if (result != null) {
-                String content = result.toString().trim();
-                if (content.length() > MAX_CONTENT_LENGTH) {
-                    content = content.substring(0, MAX_CONTENT_LENGTH) + "...";
-                }
-                LOGGER.debug("Extracted {} characters from page", content.length());
-                return content;
+            long started = System.nanoTime();
+            Object result = webEngine.executeScript(buildSnapshotScript());
+            if (result == null) {
+                return PageSnapshot.EMPTY;
             }
+            ParsedSnapshot parsed = parseSnapshot(result.toString(), location);
+            PageSnapshot snapshot = parsed.snapshot();
+            LOGGER.debug("Page snapshot: {} chars, {} links, {} products in {} ms", snapshot.text().length(),
+                    snapshot.links().size(), snapshot.products().size(), (System.nanoTime() - started) / 1_000_000);
+            cachedSnapshot = snapshot;
+            cachedGeneration = parsed.generation();
+            return snapshot;
         } catch (Exception e) {
-            LOGGER.error("Failed to extract page content", e);
+            LOGGER.error("Failed to take page snapshot", e);
+            return PageSnapshot.EMPTY;
         }
-        return "";
     }
 
-    public String extractContentWithLinks() {
-        if (webEngine.getLocation() == null || webEngine.getLocation().isBlank()) {
-            return "";
+    /** The page's DOM generation counter, or -1 if it cannot be read (forces a fresh snapshot). */
+    private long currentGeneration() {
+        try {
+            return webEngine.executeScript(GENERATION_SCRIPT) instanceof Number n ? n.longValue() : -1;
+        } catch (Exception e) {
+            return -1;
         }
+    }
 
-        String script = buildExtractionWithLinksScript();
+    /** Drops the cached snapshot so the next {@link #snapshot()} re-reads the page. */
+    public void invalidateSnapshot() {
+        cachedSnapshot = null;
+    }
+
+    /**
+     * Called when a page has finished loading: drops any snapshot taken while it was still
+     * loading and injects a MutationObserver that counts DOM changes in a page-side generation
+     * counter. The counter is read by {@link #snapshot()} and returned with each snapshot, so
+     * busy pages never call back into Java.
+     */
+    public void onPageLoaded() {
+        invalidateSnapshot();
         try {
-            Object result = webEngine.executeScript(script);
-            if (result != null) {
-                String full = result.toString().trim();
-                String linksHeader = "\n\nAdditional links found on page:\n";
-                int idx = full.indexOf(linksHeader);
-                if (idx != -1) {
-                    String contentPart = full.substring(0, idx);
-                    String linksPart = full.substring(idx);
-                    if (contentPart.length() > MAX_CONTENT_LENGTH * 2) {
-                        contentPart = contentPart.substring(0, MAX_CONTENT_LENGTH * 2) + "...";
-                    }
-                    return contentPart + linksPart;
-                }
-                if (full.length() > MAX_CONTENT_LENGTH * 2) {
-                    full = full.substring(0, MAX_CONTENT_LENGTH * 2) + "...";
-                }
-                return full;
-            }
+            webEngine.executeScript(MUTATION_OBSERVER_SCRIPT);
         } catch (Exception e) {
-            LOGGER.error("Failed to extract page content with links", e);
+            LOGGER.debug("Could not install DOM mutation observer", e);
         }
-        return "";
     }
 
-    private String buildExtractionScript() {
-        return """
+    private static final String MUTATION_OBSERVER_SCRIPT = """
             (function() {
-                function extractText(element) {
-                    if (!element) return '';
-                    
-                    var clone = element.cloneNode(true);
-                    
-                    var unwanted = clone.querySelectorAll('script, style, nav, header, footer, aside, .nav, .menu, .sidebar, .advertisement, .ad, .social, .comment, .hidden, [role="navigation"], [role="banner"], [role="complementary"]');
-                    unwanted.forEach(function(el) { el.remove(); });
-                    
-                    return clone.textContent || clone.innerText || '';
-                }
-                
-                var content = '';
-                
-                var main = document.querySelector('main');
-                if (main) {
-                    content = extractText(main);
-                }
-                
-                if (!content || content.length < 100) {
-                    var article = document.querySelector('article');
-                    if (article) {
-                        content = extractText(article);
+                if (window.__browserfxObserver || !document.documentElement) return;
+                window.__browserfxDomGeneration = window.__browserfxDomGeneration || 0;
+                var observer = new MutationObserver(function() {
+                    window.__browserfxDomGeneration++;
+                });
+                // Structure and text only: attribute churn (animations, hover styles) does not change the snapshot.
+                observer.observe(document.documentElement, { childList: true, characterData: true, subtree: true });
+                window.__browserfxObserver = observer;
+            })();
+            """;
+
+    /** A parsed snapshot and the DOM generation the script read the page at. */
+    private record ParsedSnapshot(PageSnapshot snapshot, long generation) {}
+
+    /**
+     * Parses the JSON produced by the snapshot script. The URL is keyed by the engine location the
+     * script ran for (not the document's, which may differ after a client-side redirect).
+     */
+    private ParsedSnapshot parseSnapshot(String json, String location) throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(new Buffer().writeUtf8(json));
+        String title = "";
+        String text = "";
+        List<String> links = new ArrayList<>();
+        List<ProductInfo> products = new ArrayList<>();
+        long generation = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "title" -> title = reader.nextString();
+                case "text" -> text = reader.nextString();
+                case "links" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        links.add(reader.nextString());
                     }
+                    reader.endArray();
                 }
-                
-                if (!content || content.length < 100) {
-                    var contentSelectors = ['.content', '.post-content', '.article-content', '.entry-content', '.body-content', '.product-list', '.products', '.shop-grid', '.product-item', '.product-card', '#content', '.main-content', '.items-grid'];
-                    for (var i = 0; i < contentSelectors.length; i++) {
-                        var el = document.querySelector(contentSelectors[i]);
-                        if (el) {
-                            content = extractText(el);
-                            if (content.length >= 100) break;
+                case "products" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        ProductInfo product = readProduct(reader);
+                        if (!product.url().isBlank()) {
+                            products.add(product);
                         }
                     }
+                    reader.endArray();
                 }
-                
-                if (!content || content.length < 100) {
-                    content = extractText(document.body);
-                }
-                
-                return content.replace(/\\s+/g, ' ').trim();
-            })()
-            """;
+                case "textMillis" -> LOGGER.debug("Snapshot text walk took {} ms", reader.nextLong());
+                case "totalMillis" -> LOGGER.debug("Snapshot script took {} ms", reader.nextLong());
+                case "generation" -> generation = reader.nextLong();
+                default -> reader.skipValue();
+            }
+        }
+        if (text.length() > MAX_CONTENT_LENGTH) {
+            text = text.substring(0, MAX_CONTENT_LENGTH) + "...";
+        }
+        return new ParsedSnapshot(new PageSnapshot(location, title, text, links, products), generation);
     }
 
-    private String buildExtractionWithLinksScript() {
+    private ProductInfo readProduct(JsonStreamReader reader) throws IOException {
+        String title = "";
+        String url = "";
+        String imageUrl = "";
+        String price = "";
+        String addToCartLabel = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "title" -> title = reader.nextString();
+                case "url" -> url = reader.nextString();
+                case "imageUrl" -> imageUrl = reader.nextString();
+                case "price" -> price = reader.nextString();
+                case "addToCartLabel" -> addToCartLabel = reader.nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return ProductInfo.of(title, url, imageUrl, price, addToCartLabel);
+    }
+
+    /**
+     * One script that returns {@code JSON.stringify({url, title, text, links, products})} plus
+     * script timings and the DOM generation it read the page at. Text is collected from the main content region by a non-mutating TreeWalker
+     * that skips navigation and clutter subtrees and stops at the length cap; links are
+     * resolved to absolute URLs with product-detail links first (capped at 50); products come
+     * from the detail layout on /products/ pages or from product cards otherwise (capped at 20).
+     */
+    private String buildSnapshotScript() {
         return """
             (function() {
-                function extractText(element) {
-                    if (!element) return '';
-                    var clone = element.cloneNode(true);
-                    var unwanted = clone.querySelectorAll('script, style, nav, header, footer, aside, .nav, .menu, .sidebar, .advertisement, .ad, .social, .comment, .hidden');
-                    unwanted.forEach(function(el) { el.remove(); });
-                    return clone.textContent || clone.innerText || '';
+                var generation = window.__browserfxDomGeneration || 0;
+                var started = Date.now();
+                var base = document.baseURI || location.href;
+                var maxText = %d;
+                function resolve(u) {
+                    if (!u) return '';
+                    try { return new URL(u, base).href; } catch (e) { return u; }
+                }
+                function clean(s) {
+                    if (!s) return '';
+                    return s.replace(/\\s+/g, ' ').trim().substring(0, 300);
+                }
+
+                // ---- Text ----
+                // Walk text nodes in place instead of cloning the subtree: excluded elements are
+                // rejected together with their whole subtree, and the walk stops once maxText
+                // characters have been collected.
+                var excluded = 'script, style, noscript, template, nav, header, footer, aside, .nav, .menu, .sidebar, .advertisement, .ad, .social, .comment, .hidden, [role="navigation"], [role="banner"], [role="complementary"]';
+                function extractText(root) {
+                    if (!root) return '';
+                    var parts = [];
+                    var length = 0;
+                    var walker = document.createTreeWalker(root, NodeFilter.SHOW_ELEMENT | NodeFilter.SHOW_TEXT, {
+                        acceptNode: function(node) {
+                            if (node.nodeType === 1) {
+                                return node.matches(excluded) ? NodeFilter.FILTER_REJECT : NodeFilter.FILTER_SKIP;
+                            }
+                            return NodeFilter.FILTER_ACCEPT;
+                        }
+                    });
+                    var node;
+                    while ((node = walker.nextNode())) {
+                        var value = node.nodeValue;
+                        if (!value) continue;
+                        parts.push(value);
+                        length += value.length;
+                        if (length >= maxText) break;
+                    }
+                    return parts.join('');
                 }
-                
                 var content = '';
-                
                 var main = document.querySelector('main');
                 if (main) content = extractText(main);
-                
-                if (!content || content.length < 100) {
+                if (!content || content.trim().length < 100) {
                     var article = document.querySelector('article');
                     if (article) content = extractText(article);
                 }
-                
-                if (!content || content.length < 100) {
-                    var contentSelectors = ['.content', '.post-content', '.article-content', '.entry-content', '.body-content', '.product-list', '.products', '.shop-grid', '.product-item', '.product-card', '#content', '.main-content'];
+                if (!content || content.trim().length < 100) {
+                    var contentSelectors = ['.content', '.post-content', '.article-content', '.entry-content', '.body-content', '.product-list', '.products', '.shop-grid', '.product-item', '.product-card', '#content', '.main-content', '.items-grid'];
                     for (var i = 0; i < contentSelectors.length; i++) {
                         var el = document.querySelector(contentSelectors[i]);
                         if (el) {
                             content = extractText(el);
-                            if (content.length >= 100) break;
+                            if (content.trim().length >= 100) break;
                         }
                     }
                 }
-                
-                if (!content || content.length < 100) {
+                if (!content || content.trim().length < 100) {
                     content = extractText(document.body);
                 }
-                
-                // Extract all links with their text; resolve relative URLs to absolute so the AI gets full links.
-                // Prioritize product-detail links (/products/...) so they are not pushed out by nav/footer (30 DOM-order cap).
-                // Haravan/Shopify-style: also harvest product links from product cards (title -> /products/ url) when the card has a product link.
-                var base = document.baseURI || location.href;
-                var allLinks = document.querySelectorAll('a[href]');
-                var productLinks = [];
-                var otherLinks = [];
-                var linkSet = new Set();
-                var maxTotal = 50;
-                
-                function resolveHref(raw) {
-                    if (!raw) return null;
-                    try { return new URL(raw, base).href; } catch (e) { return null; }
-                }
-                
+                var text = content.replace(/\\s+/g, ' ').trim().substring(0, maxText);
+                var textMillis = Date.now() - started;
+
+                // ---- Links ----
+                // Prioritize product-detail links (/products/...) so they are not pushed out by nav/footer.
+                // Haravan/Shopify-style: harvest product links from product cards (title -> /products/ url)
+                // so we have product name -> URL even when the <a> has no text (e.g. image link).
                 function pathIsProduct(href) {
                     var path = (href.match(/^https?:\\/\\/[^\\/]+(\\/[^?#]*)/) || [])[1] || '';
                     return /\\/products?\\//i.test(path);
                 }
-                
-                // 1) From product-card regions: get product URL + card title (h2/h3/.product-title) so we have product name -> URL even when the <a> has no text (e.g. image link).
-                var cardSelectors = ['.product-item', '.product-card', '[class*="product-card"]', '[class*="product-item"]', '.product-block', '.product-col'];
+                var productLinks = [];
+                var otherLinks = [];
+                var linkSet = new Set();
                 var seenProductUrl = new Set();
-                cardSelectors.forEach(function(sel) {
+                ['.product-item', '.product-card', '[class*="product-card"]', '[class*="product-item"]', '.product-block', '.product-col'].forEach(function(sel) {
                     try {
                         document.querySelectorAll(sel).forEach(function(card) {
                             var productAnchor = card.querySelector('a[href*="/products/"], a[href*="/product/"]');
                             if (!productAnchor) return;
-                            var rawHref = productAnchor.getAttribute('href');
-                            var href = resolveHref(rawHref);
+                            var href = resolve(productAnchor.getAttribute('href'));
                             if (!href || seenProductUrl.has(href)) return;
                             var titleEl = card.querySelector('h2, h3, .product-title, .product-name, [class*="product-title"], [class*="product-name"]');
-                            var text = (titleEl ? titleEl.textContent.trim() : productAnchor.textContent.trim()) || '';
-                            if (text.length > 0 && text.length < 200) {
+                            var t = (titleEl ? titleEl.textContent.trim() : productAnchor.textContent.trim()) || '';
+                            if (t.length > 0 && t.length < 200) {
                                 seenProductUrl.add(href);
-                                productLinks.push(text + ': ' + href);
+                                productLinks.push(t + ': ' + href);
                             }
                         });
                     } catch (e) {}
                 });
-                
-                // 2) All page links: add product links we didn't get from cards, then other links (dedupe by href).
-                allLinks.forEach(function(link) {
+                document.querySelectorAll('a[href]').forEach(function(link) {
                     var rawHref = link.getAttribute('href');
                     if (!rawHref || rawHref.startsWith('javascript:') || rawHref.startsWith('mailto:') || rawHref.startsWith('#')) return;
-                    var href = resolveHref(rawHref) || link.href || rawHref;
+                    var href = resolve(rawHref) || link.href || rawHref;
                     if (!href || linkSet.has(href)) return;
-                    var text = link.textContent.trim();
-                    if (text.length === 0 || text.length >= 200) return;
+                    var t = link.textContent.trim();
+                    if (t.length === 0 || t.length >= 200) return;
                     linkSet.add(href);
-                    if (pathIsProduct(href) && !seenProductUrl.has(href)) {
-                        seenProductUrl.add(href);
-                        productLinks.push(text + ': ' + href);
-                    } else if (!pathIsProduct(href)) {
-                        otherLinks.push(text + ': ' + href);
-                    }
-                });
-                
-                var links = productLinks.concat(otherLinks).slice(0, maxTotal);
-                var result = content.replace(/\\s+/g, ' ').trim();
-                if (links.length > 0) {
-                    result += '\\n\\nAdditional links found on page:\\n' + links.join('\\n');
-                }
-                
-                return result;
-            })()
-            """;
-    }
-
-    public String getPageTitle() {
-        try {
-            Object result = webEngine.executeScript("document.title");
-            return result != null ? result.toString() : "";
-        } catch (Exception e) {
-            LOGGER.error("Failed to get page title", e);
-            return "";
-        }
-    }
-
-    public String getPageUrl() {
-        return webEngine.getLocation();
-    }
-
-    /**
-     * Extracts product cards from the page (title, url, image URL, price) for display in the AI Companion.
-     * On product detail pages (Haravan/Shopify-style URL with /products/), tries to extract a single
-     * product with add-to-cart button label when present. Returns an empty list if extraction fails.
-     */
-    public List<ProductInfo> extractProducts() {
-        if (webEngine.getLocation() == null || webEngine.getLocation().isBlank()) {
-            return List.of();
-        }
-        try {
-            List<ProductInfo> detail = extractProductDetailIfApplicable();
-            if (!detail.isEmpty()) {
-                return detail;
-            }
-        } catch (Exception e) {
-            LOGGER.debug("Product detail extraction skipped or failed", e);
-        }
-        String script = buildExtractProductsScript();
-        try {
-            Object result = webEngine.executeScript(script);
-            if (result == null || result.toString().isBlank()) {
-                return List.of();
-            }
-            return parseProductLines(result.toString());
-        } catch (Exception e) {
-            LOGGER.debug("Failed to extract products from page", e);
-            return List.of();
-        }
-    }
-
-    /**
-     * When the current page URL looks like a product detail page (e.g. /products/...),
-     * extracts a single product with title, price, image, and add-to-cart button label
-     * (Haravan/Shopify pattern: form[action*="cart"] button or button[name="add"]).
-     * Returns empty list if not a product detail page or extraction fails.
-     */
-    private List<ProductInfo> extractProductDetailIfApplicable() {
-        String url = webEngine.getLocation();
-        if (url == null || !url.matches("(?i).*/products?/.*")) {
-            return List.of();
-        }
-        String script = buildExtractProductDetailScript();
-        try {
-            Object result = webEngine.executeScript(script);
-            if (result == null || result.toString().isBlank()) {
-                return List.of();
-            }
-            return parseProductLines(result.toString());
-        } catch (Exception e) {
-            return List.of();
-        }
-    }
-
-    private String buildExtractProductDetailScript() {
-        return """
-            (function() {
-                var base = document.baseURI || location.href;
-                function resolve(u) {
-                    if (!u) return '';
-                    try { return new URL(u, base).href; } catch (e) { return u; }
-                }
-                function clean(s) {
-                    if (!s) return '';
-                    return s.replace(/\\t/g, ' ').replace(/\\n/g, ' ').trim().substring(0, 300);
-                }
-                var title = '';
-                var price = '';
-                var imageUrl = '';
-                var addToCartLabel = '';
-                var container = document.querySelector('.product-detail, .product-single, [class*="product-detail"], [class*="product-single"], .product, main, article') || document.body;
-                var titleEl = container.querySelector('h1, .product-title, .product-name, [class*="product-title"]');
-                title = clean(titleEl ? titleEl.textContent : document.querySelector('h1') ? document.querySelector('h1').textContent : '');
-                if (title.length === 0) title = 'Product';
-                var priceEl = container.querySelector('.price, .product-price, .amount, [class*="price"], .current_price, .sale-price');
-                price = clean(priceEl ? priceEl.textContent : '');
-                var img = container.querySelector('img[src]');
-                imageUrl = img ? resolve(img.getAttribute('src') || img.getAttribute('data-src')) : '';
-                var addBtn = container.querySelector('form[action*="cart"] button[type="submit"], form[action*="cart"] button[name="add"], button[name="add"], .add-to-cart, .btn-add-to-cart, [class*="add-to-cart"]');
-                if (!addBtn) {
-                    var buttons = container.querySelectorAll('button, [role="button"], input[type="submit"]');
-                    for (var i = 0; i < buttons.length; i++) {
-                        var t = (buttons[i].textContent || buttons[i].value || '').trim();
-                        if (/Thêm vào giỏ|Add to cart|Mua ngay|Add to bag/i.test(t)) {
-                            addBtn = buttons[i];
-                            break;
+                    if (pathIsProduct(href)) {
+                        if (!seenProductUrl.has(href)) {
+                            seenProductUrl.add(href);
+                            productLinks.push(t + ': ' + href);
                         }
+                    } else {
+                        otherLinks.push(t + ': ' + href);
                     }
-                }
-                if (addBtn) addToCartLabel = clean(addBtn.textContent || addBtn.value || '');
-                return title + '\\t' + base + '\\t' + imageUrl + '\\t' + price + '\\t' + addToCartLabel;
-            })()
-            """;
-    }
+                });
+                var links = productLinks.concat(otherLinks).slice(0, 50);
 
-    private String buildExtractProductsScript() {
-        return """
-            (function() {
-                var base = document.baseURI || location.href;
-                function resolve(u) {
-                    if (!u) return '';
-                    try { return new URL(u, base).href; } catch (e) { return u; }
-                }
-                function clean(s) {
-                    if (!s) return '';
-                    return s.replace(/\\t/g, ' ').replace(/\\n/g, ' ').trim().substring(0, 300);
-                }
+                // ---- Products ----
                 function getImgUrl(img) {
                     if (!img) return '';
                     var u = img.getAttribute('src') || img.getAttribute('data-src') || img.getAttribute('data-lazy-src') || img.getAttribute('data-original');
@@ -355,76 +310,93 @@ public class PageContentExtractor {
                     }
                     return '';
                 }
-                var cardSelectors = ['.product-item', '.product-card', '[class*="product-card"]', '[class*="product-item"]', '.product-block', '.product-col', '.product', '.grid-product', '[class*="product"]'];
-                var seen = new Set();
-                var out = [];
-                var max = 20;
-                cardSelectors.forEach(function(sel) {
-                    if (out.length >= max) return;
-                    try {
-                        document.querySelectorAll(sel).forEach(function(card) {
-                            if (out.length >= max) return;
-                            var a = card.querySelector('a[href*="/products/"], a[href*="/product/"], a[href]');
-                            if (!a) return;
-                            var href = resolve(a.getAttribute('href'));
-                            if (!href || href.startsWith('javascript:') || seen.has(href)) return;
-                            var titleEl = card.querySelector('h2, h3, h4, .product-title, .product-name, [class*="product-title"], [class*="product-name"]');
-                            var title = clean((titleEl ? titleEl.textContent : a.textContent) || '');
-                            if (title.length === 0) title = 'Product';
-                            var img = card.querySelector('img');
-                            var imageUrl = getImgUrl(img);
-                            var priceEl = card.querySelector('.price, .product-price, .amount, [class*="price"], .current_price, .sale-price');
-                            var price = clean(priceEl ? priceEl.textContent : '');
-                            seen.add(href);
-                            out.push(title + '\\t' + href + '\\t' + imageUrl + '\\t' + price);
-                        });
-                    } catch (e) {}
-                });
-                if (out.length === 0) {
-                    try {
-                        document.querySelectorAll('a[href*="/products/"], a[href*="/product/"]').forEach(function(a) {
-                            if (out.length >= max) return;
-                            var href = resolve(a.getAttribute('href'));
-                            if (!href || href.startsWith('javascript:') || seen.has(href)) return;
-                            var parent = a.closest('div, li, article, section') || a.parentElement;
-                            if (!parent) return;
-                            var title = clean(a.textContent || '');
-                            if (title.length === 0) title = (parent.querySelector('h2, h3, h4') || {}).textContent || 'Product';
-                            title = clean(title);
-                            if (title.length === 0) title = 'Product';
-                            var img = parent.querySelector('img');
-                            var imageUrl = getImgUrl(img);
-                            var priceEl = parent.querySelector('.price, .product-price, .amount, [class*="price"]');
-                            var price = clean(priceEl ? priceEl.textContent : '');
-                            seen.add(href);
-                            out.push(title.substring(0, 200) + '\\t' + href + '\\t' + imageUrl + '\\t' + price);
-                        });
-                    } catch (e2) {}
+                var priceSelector = '.price, .product-price, .amount, [class*="price"], .current_price, .sale-price';
+                var products = [];
+                if (/\\/products?\\//i.test(location.pathname)) {
+                    // Product detail page: a single product with its add-to-cart button label.
+                    var container = document.querySelector('.product-detail, .product-single, [class*="product-detail"], [class*="product-single"], .product, main, article') || document.body;
+                    var titleEl = container.querySelector('h1, .product-title, .product-name, [class*="product-title"]') || document.querySelector('h1');
+                    var priceEl = container.querySelector(priceSelector);
+                    var img = container.querySelector('img[src]');
+                    var addBtn = container.querySelector('form[action*="cart"] button[type="submit"], form[action*="cart"] button[name="add"], button[name="add"], .add-to-cart, .btn-add-to-cart, [class*="add-to-cart"]');
+                    if (!addBtn) {
+                        var buttons = container.querySelectorAll('button, [role="button"], input[type="submit"]');
+                        for (var b = 0; b < buttons.length; b++) {
+                            var bt = (buttons[b].textContent || buttons[b].value || '').trim();
+                            if (/Thêm vào giỏ|Add to cart|Mua ngay|Add to bag/i.test(bt)) { addBtn = buttons[b]; break; }
+                        }
+                    }
+                    products.push({
+                        title: clean(titleEl ? titleEl.textContent : '') || 'Product',
+                        url: base,
+                        imageUrl: img ? resolve(img.getAttribute('src') || img.getAttribute('data-src')) : '',
+                        price: clean(priceEl ? priceEl.textContent : ''),
+                        addToCartLabel: addBtn ? clean(addBtn.textContent || addBtn.value || '') : ''
+                    });
+                } else {
+                    var seen = new Set();
+                    var max = 20;
+                    ['.product-item', '.product-card', '[class*="product-card"]', '[class*="product-item"]', '.product-block', '.product-col', '.product', '.grid-product', '[class*="product"]'].forEach(function(sel) {
+                        if (products.length >= max) return;
+                        try {
+                            document.querySelectorAll(sel).forEach(function(card) {
+                                if (products.length >= max) return;
+                                var a = card.querySelector('a[href*="/products/"], a[href*="/product/"], a[href]');
+                                if (!a) return;
+                                var href = resolve(a.getAttribute('href'));
+                                if (!href || href.startsWith('javascript:') || seen.has(href)) return;
+                                var titleEl = card.querySelector('h2, h3, h4, .product-title, .product-name, [class*="product-title"], [class*="product-name"]');
+                                var priceEl = card.querySelector(priceSelector);
+                                seen.add(href);
+                                products.push({
+                                    title: clean((titleEl ? titleEl.textContent : a.textContent) || '') || 'Product',
+                                    url: href,
+                                    imageUrl: getImgUrl(card.querySelector('img')),
+                                    price: clean(priceEl ? priceEl.textContent : '')
+                                });
+                            });
+                        } catch (e) {}
+                    });
+                    if (products.length === 0) {
+                        try {
+                            document.querySelectorAll('a[href*="/products/"], a[href*="/product/"]').forEach(function(a) {
+                                if (products.length >= max) return;
+                                var href = resolve(a.getAttribute('href'));
+                                if (!href || href.startsWith('javascript:') || seen.has(href)) return;
+                                var parent = a.closest('div, li, article, section') || a.parentElement;
+                                if (!parent) return;
+                                var t = clean(a.textContent || '');
+                                if (t.length === 0) t = clean((parent.querySelector('h2, h3, h4') || {}).textContent || '');
+                                var priceEl = parent.querySelector('.price, .product-price, .amount, [class*="price"]');
+                                seen.add(href);
+                                products.push({
+                                    title: (t || 'Product').substring(0, 200),
+                                    url: href,
+                                    imageUrl: getImgUrl(parent.querySelector('img')),
+                                    price: clean(priceEl ? priceEl.textContent : '')
+                                });
+                            });
+                        } catch (e2) {}
+                    }
                 }
-                return out.join('\\n');
+
+                return JSON.stringify({ url: location.href, title: document.title || '', text: text, links: links, products: products,
+                                        textMillis: textMillis, totalMillis: Date.now() - started, generation: generation });
             })()
-            """;
+            """.formatted(MAX_CONTENT_LENGTH);
     }
 
-    private List<ProductInfo> parseProductLines(String raw) {
-        List<ProductInfo> list = new ArrayList<>();
-        String[] lines = raw.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-            String[] parts = line.split("\t", -1);
-            String title = parts.length > 0 ? parts[0] : "";
-            String url = parts.length > 1 ? parts[1] : "";
-            String imageUrl = parts.length > 2 ? parts[2] : "";
-            String price = parts.length > 3 ? parts[3] : "";
-            String addToCartLabel = parts.length > 4 ? parts[4].trim() : "";
-            if (url.isBlank()) continue;
-            if (addToCartLabel.isEmpty()) {
-                list.add(ProductInfo.of(title, url, imageUrl, price));
-            } else {
-                list.add(ProductInfo.of(title, url, imageUrl, price, addToCartLabel));
-            }
+    public String getPageTitle() {
+        try {
+            Object result = webEngine.executeScript("document.title");
+            return result != null ? result.toString() : "";
+        } catch (Exception e) {
+            LOGGER.error("Failed to get page title", e);
+            return "";
         }
-        return list;
+    }
+
+    public String getPageUrl() {
+        return webEngine.getLocation();
     }
 }
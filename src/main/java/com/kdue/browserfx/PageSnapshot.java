@@ -0,0 +1,25 @@
+package com.kdue.browserfx;
+
+import java.util.List;
+
+/**
+ * Everything the AI Companion needs from the current page, captured in one script round trip:
+ * readable text, "linkText: url" lines (product links first), product cards, title and URL.
+ * Immutable, so it can be handed to background threads safely.
+ */
+public record PageSnapshot(String url, String title, String text, List<String> links, List<ProductInfo> products) {
+
+    public static final PageSnapshot EMPTY = new PageSnapshot("", "", "", List.of(), List.of());
+
+    public PageSnapshot {
+        url = url == null ? "" : url;
+        title = title == null ? "" : title;
+        text = text == null ? "" : text;
+        links = links == null ? List.of() : List.copyOf(links);
+        products = products == null ? List.of() : List.copyOf(products);
+    }
+
+    public boolean isEmpty() {
+        return text.isBlank() && links.isEmpty() && products.isEmpty();
+    }
+}
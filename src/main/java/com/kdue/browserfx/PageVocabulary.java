@@ -0,0 +1,119 @@
+package com.kdue.browserfx;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Autocomplete terms for the current page: product titles from the snapshot plus the words and
+ * phrases (up to three words) that occur repeatedly in the page text. Built off the FX thread from
+ * an immutable {@link PageSnapshot}, bounded to {@value #MAX_TERMS} terms, and looked up through a
+ * {@link KeywordIndex}. The controller drops it on navigation.
+ */
+public final class PageVocabulary {
+
+    public static final PageVocabulary EMPTY = new PageVocabulary(List.of());
+
+    private static final int MAX_TERMS = 400;
+    /** Only the start of long pages is scanned for phrases; it holds the main content. */
+    private static final int MAX_TEXT_CHARS = 40_000;
+    private static final int MAX_TITLE_LENGTH = 60;
+    private static final int MAX_NGRAM = 3;
+    private static final int MIN_OCCURRENCES = 2;
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    /** Words that make poor phrase boundaries (English and Vietnamese function words). */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "with", "you", "your", "are", "this", "that", "from", "our", "all",
+            "of", "to", "in", "on", "a", "an", "or", "is", "it", "by", "at", "as", "be",
+            "và", "của", "có", "cho", "các", "những", "là", "với", "được", "này", "một", "trong",
+            "thì", "đã", "sẽ", "để", "khi", "từ", "theo", "bạn", "chúng", "tôi");
+
+    private final KeywordIndex index;
+
+    private PageVocabulary(List<String> terms) {
+        this.index = new KeywordIndex(terms);
+    }
+
+    /** Builds the vocabulary for {@code snapshot}; safe to call on any thread. */
+    public static PageVocabulary build(PageSnapshot snapshot) {
+        if (snapshot == null || snapshot.isEmpty()) {
+            return EMPTY;
+        }
+        List<String> terms = new ArrayList<>();
+        for (ProductInfo product : snapshot.products()) {
+            String title = product.title() == null ? "" : product.title().trim().replaceAll("\\s+", " ");
+            if (!title.isEmpty() && title.length() <= MAX_TITLE_LENGTH) {
+                terms.add(title);
+            }
+        }
+        terms.addAll(frequentPhrases(snapshot.text(), MAX_TERMS - terms.size()));
+        return terms.isEmpty() ? EMPTY : new PageVocabulary(terms);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        return index.suggest(prefix, limit);
+    }
+
+    public void recordUse(String term) {
+        index.recordUse(term);
+    }
+
+    /** Words and phrases occurring at least twice, most frequent (then longest) first. */
+    private static List<String> frequentPhrases(String text, int limit) {
+        if (text == null || text.isBlank() || limit <= 0) {
+            return List.of();
+        }
+        String scanned = text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) : text;
+        List<String> words = new ArrayList<>();
+        Matcher matcher = WORD.matcher(scanned.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            if (STOP_WORDS.contains(words.get(i))) {
+                continue;
+            }
+            StringBuilder phrase = new StringBuilder();
+            for (int n = 1; n <= MAX_NGRAM && i + n <= words.size(); n++) {
+                String last = words.get(i + n - 1);
+                if (n > 1) {
+                    phrase.append(' ');
+                }
+                phrase.append(last);
+                if (STOP_WORDS.contains(last) || isNumber(last) || (n == 1 && last.length() < 3)) {
+                    continue;
+                }
+                counts.merge(phrase.toString(), 1, Integer::sum);
+            }
+        }
+        return counts.entrySet().stream()
+                .filter(e -> e.getValue() >= MIN_OCCURRENCES)
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                        .thenComparing(e -> -e.getKey().length()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static boolean isNumber(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
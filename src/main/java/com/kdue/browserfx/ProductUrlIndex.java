@@ -0,0 +1,140 @@
+package com.kdue.browserfx;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hash index of a page's products by normalized URL, built once per page snapshot. Finding the
+ * products an AI answer links to extracts the answer's URLs in one scan and looks each up, so the
+ * cost is linear in answer length plus product count. Immutable and thread-safe.
+ * <p>
+ * URLs are normalized to host (lower-cased, without {@code www.}) plus canonical path: dot
+ * segments resolved, percent-escapes decoded, repeated and trailing slashes removed, query and
+ * fragment dropped. {@code https://www.shop.vn/products/a/?variant=1} and
+ * {@code http://shop.vn/products/a} therefore match.
+ */
+public final class ProductUrlIndex {
+
+    public static final ProductUrlIndex EMPTY = new ProductUrlIndex(List.of());
+
+    /** URL candidates in plain text and markdown links; trailing punctuation is trimmed afterwards. */
+    private static final Pattern URL = Pattern.compile("https?://[^\\s<>\"'`()\\[\\]{}|\\\\^]+", Pattern.CASE_INSENSITIVE);
+
+    private final List<ProductInfo> products;
+    /** Normalized URL to positions in {@link #products}. */
+    private final Map<String, int[]> positionsByUrl = new HashMap<>();
+
+    public ProductUrlIndex(List<ProductInfo> products) {
+        this.products = List.copyOf(products);
+        for (int i = 0; i < this.products.size(); i++) {
+            String key = normalize(this.products.get(i).url());
+            if (key == null) {
+                continue;
+            }
+            int position = i;
+            positionsByUrl.merge(key, new int[] {position}, (existing, added) -> {
+                int[] merged = Arrays.copyOf(existing, existing.length + 1);
+                merged[existing.length] = position;
+                return merged;
+            });
+        }
+    }
+
+    public List<ProductInfo> products() {
+        return products;
+    }
+
+    public boolean isEmpty() {
+        return products.isEmpty();
+    }
+
+    /** Products whose URL appears in {@code text}, in page order. */
+    public List<ProductInfo> mentionedIn(String text) {
+        if (text == null || text.isBlank() || positionsByUrl.isEmpty()) {
+            return List.of();
+        }
+        BitSet found = new BitSet(products.size());
+        Matcher matcher = URL.matcher(text);
+        while (matcher.find()) {
+            int[] positions = positionsByUrl.get(normalize(trimTrailingPunctuation(matcher.group())));
+            if (positions != null) {
+                for (int position : positions) {
+                    found.set(position);
+                }
+            }
+        }
+        List<ProductInfo> out = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            out.add(products.get(i));
+        }
+        return out;
+    }
+
+    /** Returns the match key for {@code url}, or null if it is not an absolute http(s) URL. */
+    static String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String s = url.trim();
+        int cut = indexOfAny(s, '?', '#');
+        if (cut >= 0) {
+            s = s.substring(0, cut);
+        }
+        String host;
+        String path;
+        try {
+            URI uri = new URI(s).normalize();
+            if (uri.getHost() == null || uri.getScheme() == null || !uri.getScheme().toLowerCase(Locale.ROOT).startsWith("http")) {
+                return null;
+            }
+            host = uri.getHost();
+            path = uri.getPath() == null ? "" : uri.getPath();
+        } catch (URISyntaxException e) {
+            int schemeEnd = s.indexOf("://");
+            if (schemeEnd < 0) {
+                return null;
+            }
+            int pathStart = s.indexOf('/', schemeEnd + 3);
+            host = pathStart < 0 ? s.substring(schemeEnd + 3) : s.substring(schemeEnd + 3, pathStart);
+            path = pathStart < 0 ? "" : s.substring(pathStart);
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+        StringBuilder key = new StringBuilder(host.length() + path.length()).append(host);
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                key.append('/').append(segment);
+            }
+        }
+        return key.toString();
+    }
+
+    private static String trimTrailingPunctuation(String url) {
+        int end = url.length();
+        while (end > 0 && ".,;:!?*_~".indexOf(url.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    private static int indexOfAny(String s, char a, char b) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == a || c == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
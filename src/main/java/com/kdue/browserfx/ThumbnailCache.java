@@ -0,0 +1,229 @@
+package com.kdue.browserfx;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Shared cache of product thumbnails decoded at display size. Network images are loaded with the
+ * requested width/height so JavaFX downsamples while decoding instead of holding full-resolution
+ * bitmaps. Concurrent requests for the same URL share one load.
+ * <p>
+ * Decoded thumbnails are held through soft references, so the JVM can drop them under memory
+ * pressure. They are also written to a disk tier as raw ARGB pixels, a few KB each, so later
+ * sessions skip the download. Disk I/O runs on the executor passed in.
+ */
+public final class ThumbnailCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final String FILE_SUFFIX = ".thumb";
+    private static final int MAX_DISK_FILES = 2000;
+
+    private final int width;
+    private final int height;
+    private final Path diskDir;
+    private final Map<String, SoftReference<Image>> images = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Image>> loading = new ConcurrentHashMap<>();
+    private final Executor diskExecutor;
+
+    /**
+     * @param diskDir directory for the persistent tier, or null to keep thumbnails in memory only
+     * @param diskExecutor runs disk reads, writes and pruning
+     */
+    public ThumbnailCache(int width, int height, Path diskDir, Executor diskExecutor) {
+        this.width = width;
+        this.height = height;
+        this.diskDir = diskDir;
+        this.diskExecutor = diskExecutor;
+        if (diskDir != null) {
+            diskExecutor.execute(this::pruneDiskDir);
+        }
+    }
+
+    /**
+     * Returns the thumbnail for {@code url}. The future is already complete on a memory hit;
+     * otherwise it completes (on an arbitrary thread) once the disk tier or the network delivered
+     * the image, or exceptionally if it cannot be loaded.
+     */
+    public CompletableFuture<Image> load(String url) {
+        SoftReference<Image> ref = images.get(url);
+        Image cached = ref != null ? ref.get() : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (ref != null) {
+            images.remove(url, ref);
+        }
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> existing = loading.putIfAbsent(url, created);
+        if (existing != null) {
+            return existing;
+        }
+        created.whenComplete((image, error) -> {
+            loading.remove(url, created);
+            if (image != null) {
+                images.put(url, new SoftReference<>(image));
+            }
+        });
+        diskExecutor.execute(() -> {
+            Image fromDisk = readFromDisk(url);
+            if (fromDisk != null) {
+                created.complete(fromDisk);
+            } else {
+                Platform.runLater(() -> loadFromNetwork(url, created));
+            }
+        });
+        return created;
+    }
+
+    /** Starts a background decode at thumbnail size; must run on the FX thread. */
+    private void loadFromNetwork(String url, CompletableFuture<Image> result) {
+        Image image;
+        try {
+            image = new Image(url, width, height, true, true, true);
+        } catch (IllegalArgumentException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        Runnable finish = () -> {
+            if (image.isError()) {
+                result.completeExceptionally(image.getException() != null
+                        ? image.getException() : new IOException("Failed to load " + url));
+            } else {
+                result.complete(image);
+                diskExecutor.execute(() -> writeToDisk(url, image));
+            }
+        };
+        if (image.getProgress() >= 1 || image.isError()) {
+            finish.run();
+            return;
+        }
+        image.progressProperty().addListener((obs, oldProgress, progress) -> {
+            if (progress.doubleValue() >= 1 && !result.isDone()) {
+                finish.run();
+            }
+        });
+        image.errorProperty().addListener((obs, wasError, isError) -> {
+            if (isError && !result.isDone()) {
+                finish.run();
+            }
+        });
+    }
+
+    private Image readFromDisk(String url) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(fileName(url));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int w = in.readInt();
+            int h = in.readInt();
+            if (w <= 0 || h <= 0 || w > 4 * width || h > 4 * height) {
+                throw new IOException("Invalid thumbnail size " + w + "x" + h);
+            }
+            int[] pixels = new int[w * h];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = in.readInt();
+            }
+            WritableImage image = new WritableImage(w, h);
+            image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+            return image;
+        } catch (IOException e) {
+            LOGGER.debug("Dropping unreadable thumbnail {}", file, e);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Retried on the next prune.
+            }
+            return null;
+        }
+    }
+
+    private void writeToDisk(String url, Image image) {
+        PixelReader reader = image.getPixelReader();
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        if (diskDir == null || reader == null || w <= 0 || h <= 0) {
+            return;
+        }
+        int[] pixels = new int[w * h];
+        reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+        Path file = diskDir.resolve(fileName(url));
+        try {
+            Path tmp = Files.createTempFile(diskDir, "thumb", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(w);
+                out.writeInt(h);
+                for (int pixel : pixels) {
+                    out.writeInt(pixel);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to persist thumbnail {}", file, e);
+        }
+    }
+
+    /** Creates the disk directory and drops the oldest thumbnails beyond {@link #MAX_DISK_FILES}. */
+    private void pruneDiskDir() {
+        try {
+            Files.createDirectories(diskDir);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(diskDir)) {
+                files = stream.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX))
+                        .sorted((a, b) -> Long.compare(lastModified(b), lastModified(a)))
+                        .toList();
+            }
+            for (int i = MAX_DISK_FILES; i < files.size(); i++) {
+                Files.deleteIfExists(files.get(i));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot prepare thumbnail cache in {}", diskDir, e);
+        }
+    }
+
+    private String fileName(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((width + "x" + height + ":" + url).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest()) + FILE_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
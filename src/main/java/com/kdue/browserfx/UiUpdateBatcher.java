@@ -0,0 +1,120 @@
+package com.kdue.browserfx;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects UI mutations posted from any thread and applies them together once per JavaFX pulse,
+ * instead of one {@link Platform#runLater} runnable per change. Updates run in posting order.
+ * {@link #postCoalesced} keeps only the latest update per key until the next pulse, which turns a
+ * burst of streaming deltas into a single UI change per frame.
+ * <p>
+ * The {@link AnimationTimer} only runs while updates are pending. Queue depth and apply time per
+ * frame are tracked; frames that exceed the frame budget are logged at debug level.
+ */
+public final class UiUpdateBatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UiUpdateBatcher.class);
+
+    /** Apply time above which a frame is reported as slow (one 60 Hz frame). */
+    private static final long SLOW_FRAME_NANOS = 16_000_000;
+
+    /** Counters since startup; max values are per frame. */
+    public record Stats(long frames, long updates, int maxQueueDepth, long maxApplyNanos, long totalApplyNanos) {
+        public double averageApplyMillis() {
+            return frames == 0 ? 0 : totalApplyNanos / 1_000_000.0 / frames;
+        }
+    }
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final Map<Object, Runnable> coalesced = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyPending();
+        }
+    };
+
+    // Written on the FX thread only.
+    private long frames;
+    private long updates;
+    private int maxQueueDepth;
+    private long maxApplyNanos;
+    private long totalApplyNanos;
+
+    /** Queues {@code update} for the next pulse. Safe to call from any thread. */
+    public void post(Runnable update) {
+        pending.add(update);
+        schedule();
+    }
+
+    /**
+     * Queues {@code update} for the next pulse, replacing an update with the same {@code key}
+     * that has not been applied yet. The update keeps the queue position of the first one.
+     */
+    public void postCoalesced(Object key, Runnable update) {
+        if (coalesced.put(key, update) == null) {
+            pending.add(() -> {
+                Runnable latest = coalesced.remove(key);
+                if (latest != null) {
+                    latest.run();
+                }
+            });
+        }
+        schedule();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(frames, updates, maxQueueDepth, maxApplyNanos, totalApplyNanos);
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            if (Platform.isFxApplicationThread()) {
+                timer.start();
+            } else {
+                Platform.runLater(timer::start);
+            }
+        }
+    }
+
+    private void applyPending() {
+        // Updates posted from here on schedule the timer again, so none can be stranded by stop().
+        scheduled.set(false);
+        int depth = pending.size();
+        long start = System.nanoTime();
+        int applied = 0;
+        Runnable update;
+        while (applied < depth && (update = pending.poll()) != null) {
+            try {
+                update.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("UI update failed", e);
+            }
+            applied++;
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            frames++;
+            updates += applied;
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+            maxApplyNanos = Math.max(maxApplyNanos, elapsed);
+            totalApplyNanos += elapsed;
+        }
+        if (elapsed > SLOW_FRAME_NANOS) {
+            LOGGER.debug("Slow UI frame: {} updates in {} ms", applied, elapsed / 1_000_000);
+        }
+        if (pending.isEmpty() && !scheduled.get()) {
+            timer.stop();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.kdue.browserfx;
+
+import javafx.scene.web.WebEngine;
+import javafx.scene.web.WebView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of {@link WebView}s for HTML content shown inside the AI panel. A view is acquired
+ * when a cell starts showing content and released when the cell is recycled; released views are
+ * reset to a blank document and kept for reuse (up to {@code maxIdle}), so the number of live
+ * WebKit engines follows the number of visible cells rather than the length of the session.
+ * <p>
+ * Each view carries exactly one navigation listener, installed at creation: a click on an
+ * http(s) link is handed to the current holder's callback and the view reloads its content.
+ * FX thread only.
+ */
+public final class WebViewPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebViewPool.class);
+
+    private static final String CONTENT_KEY = "webViewPool.content";
+    private static final String NAVIGATE_KEY = "webViewPool.onNavigate";
+
+    private final int maxIdle;
+    private final Deque<WebView> idle = new ArrayDeque<>();
+    private int created;
+    private int inUse;
+
+    public WebViewPool(int maxIdle) {
+        this.maxIdle = Math.max(0, maxIdle);
+    }
+
+    /** Returns a view showing {@code html}; link clicks go to {@code onNavigate}. */
+    public WebView acquire(String html, Consumer<String> onNavigate) {
+        WebView view = idle.pollFirst();
+        if (view == null) {
+            view = create();
+        }
+        inUse++;
+        view.getProperties().put(CONTENT_KEY, html);
+        view.getProperties().put(NAVIGATE_KEY, onNavigate);
+        view.getEngine().loadContent(html, "text/html");
+        return view;
+    }
+
+    /** Returns a view to the pool; it is blanked and either kept for reuse or dropped. */
+    public void release(WebView view) {
+        if (view == null || view.getProperties().remove(CONTENT_KEY) == null) {
+            return;
+        }
+        inUse--;
+        view.getProperties().remove(NAVIGATE_KEY);
+        view.getEngine().loadContent("", "text/html");
+        if (idle.size() < maxIdle) {
+            idle.addFirst(view);
+        }
+        LOGGER.debug("WebView released ({} in use, {} idle, {} created)", inUse, idle.size(), created);
+    }
+
+    private WebView create() {
+        WebView view = new WebView();
+        view.setContextMenuEnabled(false);
+        WebEngine engine = view.getEngine();
+        engine.locationProperty().addListener((obs, oldLoc, newLoc) -> {
+            if (newLoc == null || !(newLoc.startsWith("http://") || newLoc.startsWith("https://"))) {
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            Consumer<String> onNavigate = (Consumer<String>) view.getProperties().get(NAVIGATE_KEY);
+            if (onNavigate != null) {
+                onNavigate.accept(newLoc);
+            }
+            String content = (String) view.getProperties().get(CONTENT_KEY);
+            engine.loadContent(content != null ? content : "", "text/html");
+        });
+        created++;
+        return view;
+    }
+}
@@ -5,6 +5,7 @@ module com.kdue.browserfx {
     requires javafx.web;
     requires org.slf4j;
     requires okhttp3;
+    requires okio;
 
     opens com.kdue.browserfx to javafx.fxml;
     exports com.kdue.browserfx;